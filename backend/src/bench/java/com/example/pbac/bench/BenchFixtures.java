@@ -0,0 +1,97 @@
+package com.example.pbac.bench;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+/**
+ * Datos compartidos por los benchmarks: configuración, un catálogo de permisos
+ * compilado sin base de datos y un usuario con roles y permisos similares a los
+ * del seed de la aplicación.
+ */
+
+final class BenchFixtures {
+    static final String[] PERMISSIONS = {
+            "user_findAll", "user_findById", "user_create", "user_update", "user_delete",
+            "role_findAll", "role_findById", "role_create", "role_update", "role_delete",
+            "permission_findAll", "permission_findById", "permission_create", "permission_update",
+            "permission_delete" };
+
+    private BenchFixtures() {
+    }
+
+    static Config config(boolean selfContained) {
+        Config config = new Config();
+        config.origin = "http://localhost:4200";
+        config.secret_key = "bb6a14ac2eba9b3e01f52ab78a81c08c57f6cbda0c38736c6bf683e33a399481";
+        config.expiration_millis = 604800000L;
+        config.self_contained = selfContained;
+        config.jwt_algorithm = "HS256";
+        config.jwt_key_ring_rotation_millis = 2592000000L;
+        config.jwks_max_age_seconds = 3600;
+        config.revocation_expected_tokens = 100000;
+        config.revocation_false_positive_rate = 0.001;
+        config.auth_cache_max_size = 10000;
+        config.auth_cache_ttl_millis = 60000L;
+        return config;
+    }
+
+    static List<Permission> permissions() {
+        List<Permission> permissions = new ArrayList<>();
+        for (int i = 0; i < PERMISSIONS.length; i++) {
+            Permission permission = new Permission();
+            permission.setId(i + 1);
+            permission.setName(PERMISSIONS[i]);
+            permissions.add(permission);
+        }
+        return permissions;
+    }
+
+    static List<Role> roles(List<Permission> permissions) {
+        Role admin = new Role();
+        admin.setId(1);
+        admin.setName("ADMIN");
+        admin.setPermissions(new HashSet<>(permissions));
+
+        Role user = new Role();
+        user.setId(2);
+        user.setName("USUARIO");
+        user.setPermissions(Set.of(permissions.get(0), permissions.get(1)));
+        return List.of(admin, user);
+    }
+
+    static User user(List<Role> roles) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setEmail("admin@example.com");
+        user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2D/5Q1jY6Q5K1uYp1pZ5Y1e");
+        user.setFirstname("Admin");
+        user.setLastname("Bench");
+        user.setActive(true);
+        user.setRoles(new HashSet<>(roles));
+        return user;
+    }
+
+    static PermissionCatalog catalog(List<Permission> permissions, List<Role> roles) {
+        PermissionRepository permissionRepository = mock(PermissionRepository.class);
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(permissionRepository.findAll()).thenReturn(permissions);
+        when(roleRepository.findAll()).thenReturn(roles);
+        PermissionCatalog catalog = new PermissionCatalog(permissionRepository, roleRepository, null);
+        catalog.refresh();
+        return catalog;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.pbac.bench;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Falla si el camino exitoso de `JwtAuthenticationFilter` vuelve a reservar
+ * memoria por solicitud: ejecuta `JwtAuthenticationFilterAllocationBenchmark`
+ * con el perfilador de GC y compara `gc.alloc.rate.norm` con un límite por
+ * modo. Los límites dejan un margen de 64-128 B sobre lo medido (448 B/op sin
+ * token autocontenido, 1536 B/op con él); una reserva nueva por solicitud los
+ * supera.
+ *
+ * Solo existe con el perfil `bench`:
+ *
+ * mvn -Pbench test -Dtest=JwtAuthenticationFilterAllocationTests
+ */
+class JwtAuthenticationFilterAllocationTests {
+
+    private static final double MAX_BYTES_PER_OP = 512;
+    private static final double MAX_BYTES_PER_OP_SELF_CONTAINED = 1664;
+
+    @Test
+    void theFilterStaysWithinItsAllocationBudget() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(JwtAuthenticationFilterAllocationBenchmark.class.getName() + ".validToken")
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        assertThat(results).hasSize(2);
+        for (RunResult result : results) {
+            boolean selfContained = Boolean.parseBoolean(result.getParams().getParam("selfContained"));
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            assertThat(allocation.getScore()).as("B/op con selfContained=%s", selfContained)
+                    .isLessThanOrEqualTo(selfContained ? MAX_BYTES_PER_OP_SELF_CONTAINED : MAX_BYTES_PER_OP);
+        }
+    }
+}
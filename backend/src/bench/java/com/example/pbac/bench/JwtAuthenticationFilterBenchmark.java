@@ -0,0 +1,118 @@
+package com.example.pbac.bench;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.repository.security.RevokedTokenRepository;
+import com.example.pbac.persistence.service.security.TokenRevocationService;
+import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.util.metrics.AuthMetrics;
+import com.example.pbac.web.middleware.JwtAuthenticationFilter;
+import com.example.pbac.web.security.model.UserFactory;
+import com.example.pbac.web.security.service.JwtKeyRing;
+import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+
+/**
+ * Recorrido completo de `JwtAuthenticationFilter` con solicitudes simuladas:
+ * token válido (desde la caché de autoridades o autocontenido), token
+ * inválido y solicitud sin token. El `UserService` devuelve siempre la misma
+ * instantánea, como lo haría la caché de autoridades con un acierto.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean selfContained;
+
+    private JwtAuthenticationFilter filter;
+    private String validHeader;
+    private String invalidHeader;
+
+    @Setup
+    public void setup() throws ServletException {
+        List<Permission> permissions = BenchFixtures.permissions();
+        List<Role> roles = BenchFixtures.roles(permissions);
+        Config config = BenchFixtures.config(selfContained);
+        PermissionCatalog catalog = BenchFixtures.catalog(permissions, roles);
+        JwtService jwtService = new JwtService(config, new JwtKeyRing(config));
+        UserFactory userFactory = new UserFactory(BenchFixtures.user(roles), catalog.current());
+
+        UserService userService = mock(UserService.class);
+        UserDetailsService userDetailsService = username -> userFactory;
+        when(userService.userDetailsService()).thenReturn(userDetailsService);
+
+        TokenRevocationService revocations = new TokenRevocationService(mock(RevokedTokenRepository.class),
+                config, new SimpleMeterRegistry());
+
+        filter = new JwtAuthenticationFilter(config, jwtService, userService, catalog,
+                new AuthMetrics(new SimpleMeterRegistry()), revocations);
+        filter.afterPropertiesSet();
+
+        String token = jwtService.generateAccessToken(userFactory);
+        validHeader = "Bearer " + token;
+        invalidHeader = "Bearer " + token.substring(0, token.length() - 4) + "AAAA";
+    }
+
+    @Benchmark
+    public MockHttpServletResponse validToken() throws ServletException, IOException {
+        return run(validHeader);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse invalidToken() throws ServletException, IOException {
+        return run(invalidHeader);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse noToken() throws ServletException, IOException {
+        return run(null);
+    }
+
+    private MockHttpServletResponse run(String authorization) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/user/findAll");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.pbac.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.model.UserFactory;
+import com.example.pbac.web.security.service.JwtKeyRing;
+import com.example.pbac.web.security.service.JwtService;
+
+/**
+ * Costo de emitir y verificar tokens de acceso, con y sin claims de
+ * autoridades (`jwt.self_contained`), firmados con HS256 o ES256.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean selfContained;
+
+    @Param({ "HS256", "ES256" })
+    public String algorithm;
+
+    private JwtService jwtService;
+    private UserFactory userFactory;
+    private String token;
+
+    @Setup
+    public void setup() {
+        List<Permission> permissions = BenchFixtures.permissions();
+        List<Role> roles = BenchFixtures.roles(permissions);
+        Config config = BenchFixtures.config(selfContained);
+        config.jwt_algorithm = algorithm;
+        jwtService = new JwtService(config, new JwtKeyRing(config));
+        userFactory = new UserFactory(BenchFixtures.user(roles),
+                BenchFixtures.catalog(permissions, roles).current());
+        token = jwtService.generateAccessToken(userFactory);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtService.generateAccessToken(userFactory);
+    }
+
+    @Benchmark
+    public JwtService.ClaimWrapper<String> extractUsername() {
+        return jwtService.extractUsername(token);
+    }
+
+    @Benchmark
+    public JwtService.ValidationWrapper isTokenValid() {
+        return jwtService.isTokenValid(token, userFactory);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken verify() {
+        return jwtService.verify(token);
+    }
+}
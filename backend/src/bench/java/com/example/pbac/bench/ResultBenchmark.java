@@ -0,0 +1,45 @@
+package com.example.pbac.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.Result;
+
+/**
+ * Costo de serializar un `Result` de error, que es lo que escriben el filtro
+ * JWT y el manejador de acceso denegado en cada rechazo.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultBenchmark {
+
+    private Result<Void, Error> result;
+
+    @Setup
+    public void setup() {
+        result = new Result<>();
+        result.setErr(new Error("El token ha expirado", "Expired JWT token", ErrorKind.ExpiredTokenError));
+    }
+
+    @Benchmark
+    public String toJson() {
+        return result.toJson();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.pbac.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.web.security.model.UserFactory;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+/**
+ * Costo de construir la instantánea de autoridades de un usuario, desde la
+ * entidad o desde las claims de un token, y de consultar una autoridad.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserFactoryBenchmark {
+
+    private User user;
+    private PermissionCatalog.Snapshot catalog;
+    private UserFactory userFactory;
+    private String encodedPermissions;
+
+    @Setup
+    public void setup() {
+        List<Permission> permissions = BenchFixtures.permissions();
+        List<Role> roles = BenchFixtures.roles(permissions);
+        user = BenchFixtures.user(roles);
+        catalog = BenchFixtures.catalog(permissions, roles).current();
+        userFactory = new UserFactory(user, catalog);
+        encodedPermissions = userFactory.encodePermissions();
+    }
+
+    @Benchmark
+    public UserFactory fromUser() {
+        return new UserFactory(user, catalog);
+    }
+
+    @Benchmark
+    public UserFactory fromClaims() {
+        return new UserFactory(user.getUsername(), userFactory.getRoleIds(), encodedPermissions, catalog);
+    }
+
+    @Benchmark
+    public boolean hasAuthority() {
+        return userFactory.hasAuthority("user_delete");
+    }
+}
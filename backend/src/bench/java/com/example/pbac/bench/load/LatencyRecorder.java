@@ -0,0 +1,56 @@
+package com.example.pbac.bench.load;
+
+import java.util.Arrays;
+
+/**
+ * Registro de latencias (en nanosegundos) de un solo hilo. Se guardan todas
+ * las muestras para calcular percentiles exactos al final.
+ */
+
+final class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    void record(long nanos, boolean error) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    void addAll(LatencyRecorder other) {
+        if (count + other.count > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + other.count));
+        }
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        errors += other.errors;
+    }
+
+    void sort() {
+        Arrays.sort(samples, 0, count);
+    }
+
+    /**
+     * Debe llamarse después de `sort()`.
+     */
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return samples[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int errors() {
+        return errors;
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.pbac.bench.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.example.pbac.PbacApplication;
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.persistence.repository.security.UserRepository;
+import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+import com.example.pbac.web.security.service.PermissionCatalog;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Prueba de carga de extremo a extremo sin red ni Docker.
+ *
+ * Levanta la aplicación completa con el perfil `loadtest` (H2 en modo
+ * PostgreSQL, sesiones en memoria), siembra usuarios, roles y permisos, y
+ * ejecuta `load.concurrency` clientes durante `load.duration_seconds`. Cada
+ * cliente repite el ciclo `/auth/login` -> `/auth/user` -> `/user/findAll` ->
+ * `/auth/refresh_token` con un usuario propio. Al final imprime p50/p95/p99 y
+ * throughput por endpoint.
+ *
+ * mvn -Pbench test-compile exec:exec -Dbench.main=com.example.pbac.bench.load.LoadHarness \
+ * -Dbench.args="--load.users=200 --load.concurrency=64 --load.duration_seconds=30"
+ *
+ * Con `--load.virtual=true` (JDK 21) la aplicación atiende en hilos virtuales,
+ * lo que permite comparar ambos modos con la misma carga. `exec:exec` usa el
+ * `java` del PATH; los fijados de hilos virtuales se registran con
+ * `JAVA_TOOL_OPTIONS=-Djdk.tracePinnedThreads=short`.
+ *
+ * Última comparación (JDK 21.0.1, 1 CPU, 50 usuarios, 16 clientes, 15 s): ambos
+ * modos atienden ~5 ciclos/s, limitados por BCrypt en `/auth/login` (p50
+ * ~2,6 s); el resto de las latencias varía más entre corridas que entre modos,
+ * y con hilos virtuales no se registró ningún fijado.
+ */
+
+public final class LoadHarness {
+
+    enum Endpoint {
+        LOGIN, USER, FIND_ALL, REFRESH
+    }
+
+    private static final String PASSWORD = "loadtest";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(PbacApplication.class)
+                .profiles("loadtest")
+                .run(args);
+        try {
+            Environment env = context.getEnvironment();
+            int users = env.getProperty("load.users", Integer.class, 100);
+            int concurrency = env.getProperty("load.concurrency", Integer.class, 32);
+            int warmupSeconds = env.getProperty("load.warmup_seconds", Integer.class, 5);
+            int durationSeconds = env.getProperty("load.duration_seconds", Integer.class, 30);
+
+            seed(context, users);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = String.format("http://localhost:%d%s", port,
+                    env.getProperty("server.servlet.context-path", ""));
+
+            System.out.printf("Load: users=%d concurrency=%d warmup=%ds duration=%ds virtual=%s%n", users,
+                    concurrency, warmupSeconds, durationSeconds,
+                    env.getProperty("spring.threads.virtual.enabled", "false"));
+
+            run(baseUrl, users, concurrency, warmupSeconds, false);
+            Map<Endpoint, LatencyRecorder> results = run(baseUrl, users, concurrency, durationSeconds, true);
+            report(results, durationSeconds);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Crea los permisos, un rol ADMIN con todos ellos y `users` usuarios con ese
+     * rol. BCrypt se calcula una sola vez y el hash se comparte entre usuarios.
+     */
+    private static void seed(ConfigurableApplicationContext context, int users) {
+        PermissionRepository permissionRepository = context.getBean(PermissionRepository.class);
+        RoleRepository roleRepository = context.getBean(RoleRepository.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        PasswordEncoder encoder = context.getBean(PasswordEncoderProvider.class).passwordEncoder();
+
+        Set<Permission> permissions = new HashSet<>();
+        for (String entity : List.of("user", "role", "permission")) {
+            for (String action : List.of("findAll", "findById", "create", "update", "delete")) {
+                Permission permission = new Permission();
+                permission.setName(String.format("%s_%s", entity, action));
+                permissions.add(permissionRepository.save(permission));
+            }
+        }
+
+        Role admin = new Role();
+        admin.setName("ADMIN");
+        admin.setPermissions(permissions);
+        admin = roleRepository.save(admin);
+
+        String hash = encoder.encode(PASSWORD);
+        List<User> batch = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setUsername(username(i));
+            user.setEmail(String.format("%s@loadtest.local", username(i)));
+            user.setPassword(hash);
+            user.setFirstname("Load");
+            user.setLastname(String.valueOf(i));
+            user.setActive(true);
+            user.setRoles(Set.of(admin));
+            batch.add(user);
+        }
+        userRepository.saveAll(batch);
+
+        context.getBean(PermissionCatalog.class).refresh();
+    }
+
+    private static Map<Endpoint, LatencyRecorder> run(String baseUrl, int users, int concurrency, int seconds,
+            boolean measure) throws InterruptedException {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Math.max(2, concurrency / 4));
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientExecutor)
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Client> clients = new ArrayList<>(concurrency);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Client worker = new Client(client, baseUrl, username(i % users));
+            clients.add(worker);
+            workers.execute(() -> {
+                try {
+                    worker.run(deadline);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+        clientExecutor.shutdown();
+
+        Map<Endpoint, LatencyRecorder> merged = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            for (Client worker : clients) {
+                recorder.addAll(worker.recorders.get(endpoint));
+            }
+            merged.put(endpoint, recorder);
+        }
+        if (!measure) {
+            System.out.printf("Warmup done: %d requests%n",
+                    merged.values().stream().mapToInt(LatencyRecorder::count).sum());
+        }
+        return merged;
+    }
+
+    private static void report(Map<Endpoint, LatencyRecorder> results, int seconds) {
+        System.out.printf("%n%-14s %10s %8s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p95 ms", "p99 ms");
+        for (Map.Entry<Endpoint, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            recorder.sort();
+            System.out.printf("%-14s %10d %8d %10.1f %10.2f %10.2f %10.2f%n", entry.getKey(), recorder.count(),
+                    recorder.errors(), recorder.count() / (double) seconds, recorder.percentileMillis(0.50),
+                    recorder.percentileMillis(0.95), recorder.percentileMillis(0.99));
+        }
+    }
+
+    private static String username(int i) {
+        return String.format("load%05d", i);
+    }
+
+    /**
+     * Un cliente con su propio usuario y sus propios registros de latencia, de
+     * modo que medir no introduce contención entre clientes.
+     */
+    private static final class Client {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final String username;
+        private final Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+
+        private String accessToken;
+        private String refreshToken;
+
+        Client(HttpClient client, String baseUrl, String username) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.username = username;
+            for (Endpoint endpoint : Endpoint.values()) {
+                recorders.put(endpoint, new LatencyRecorder());
+            }
+        }
+
+        void run(long deadline) {
+            while (System.nanoTime() < deadline) {
+                if (!login()) {
+                    continue;
+                }
+                get(Endpoint.USER, "/auth/user");
+                get(Endpoint.FIND_ALL, "/user/findAll");
+                refresh();
+            }
+        }
+
+        private boolean login() {
+            String body = String.format("{\"username\":\"%s\",\"password\":\"%s\"}", username, PASSWORD);
+            HttpResponse<String> response = send(Endpoint.LOGIN, post("/auth/login", body));
+            return response != null && response.statusCode() == 200 && readTokens(response.body());
+        }
+
+        private void refresh() {
+            String body = String.format("{\"refreshToken\":\"%s\"}", refreshToken);
+            HttpResponse<String> response = send(Endpoint.REFRESH, post("/auth/refresh_token", body));
+            if (response != null && response.statusCode() == 200) {
+                readTokens(response.body());
+            }
+        }
+
+        private void get(Endpoint endpoint, String path) {
+            send(endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Authorization", "Bearer " + accessToken)
+                    .GET()
+                    .build());
+        }
+
+        private HttpRequest post(String path, String body) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private HttpResponse<String> send(Endpoint endpoint, HttpRequest request) {
+            LatencyRecorder recorder = recorders.get(endpoint);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                recorder.record(System.nanoTime() - start, response.statusCode() >= 400);
+                return response;
+            } catch (Exception err) {
+                recorder.record(System.nanoTime() - start, true);
+                return null;
+            }
+        }
+
+        private boolean readTokens(String body) {
+            JsonObject ok = JsonParser.parseString(body).getAsJsonObject().getAsJsonObject("ok");
+            if (ok == null) {
+                return false;
+            }
+            accessToken = ok.get("accessToken").getAsString();
+            refreshToken = ok.get("refreshToken").getAsString();
+            return true;
+        }
+    }
+}
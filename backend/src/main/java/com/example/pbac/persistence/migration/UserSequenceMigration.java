@@ -0,0 +1,76 @@
+package com.example.pbac.persistence.migration;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * UserSequenceMigration ajusta la secuencia `users_seq` en las bases creadas
+ * cuando `users.id` era IDENTITY.
+ *
+ * `ddl-auto=update` crea la secuencia empezando en 1 aunque la tabla ya tenga
+ * filas, y los primeros INSERT chocarían con las llaves existentes. Al iniciar,
+ * después de que Hibernate actualiza el esquema, se compara el siguiente bloque
+ * que entregaría la secuencia con `max(id)` y, si se solapan, la secuencia se
+ * reinicia por encima. En una base ya ajustada (o nueva) no hace nada.
+ */
+
+@Component
+@DependsOn("entityManagerFactory")
+public class UserSequenceMigration {
+    public static final String SEQUENCE = "users_seq";
+    // Debe coincidir con el allocationSize de User.id
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSequenceMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserSequenceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!isPostgres()) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM users", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        Map<String, Object> sequence = jdbcTemplate.queryForMap(
+                "SELECT last_value, is_called FROM " + SEQUENCE);
+        long lastValue = ((Number) sequence.get("last_value")).longValue();
+        boolean called = (Boolean) sequence.get("is_called");
+        // Con el optimizador pooled, nextval = n entrega los ids (n - 49, n]
+        long nextValue = called ? lastValue + ALLOCATION_SIZE : lastValue;
+        if (nextValue - ALLOCATION_SIZE + 1 > maxId) {
+            return;
+        }
+
+        long restart = maxId + ALLOCATION_SIZE;
+        jdbcTemplate.queryForObject("SELECT setval(?, ?, false)", Long.class, SEQUENCE, restart);
+        logger.info("Moved {} from {} to {} to stay above max(users.id) = {}", SEQUENCE, nextValue, restart,
+                maxId);
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    metaData -> metaData.getDatabaseProductName());
+            return "PostgreSQL".equals(product);
+        } catch (MetaDataAccessException err) {
+            logger.warn("Could not detect the database, skipping the {} migration", SEQUENCE, err);
+            return false;
+        }
+    }
+}
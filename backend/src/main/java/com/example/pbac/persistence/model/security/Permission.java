@@ -2,6 +2,9 @@ package com.example.pbac.persistence.model.security;
 
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Column;
@@ -12,12 +15,17 @@ import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "security.permission")
 public class Permission {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @EqualsAndHashCode.Include
     private int id;
 
     @Column(length = 64, unique = true)
@@ -25,5 +33,6 @@ public class Permission {
 
     @ManyToMany(mappedBy = "permissions")
     @JsonIgnore
+    @ToString.Exclude
     private List<Role> roles;
 }
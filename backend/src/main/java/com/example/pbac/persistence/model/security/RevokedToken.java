@@ -0,0 +1,28 @@
+package com.example.pbac.persistence.model.security;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Este archivo genera la tabla de tokens de acceso revocados antes de su
+ * expiración (por ejemplo, al cerrar sesión). Cada fila guarda el `jti` del
+ * token y su expiración; pasada esa fecha el token ya no es válido de todos
+ * modos y la fila se elimina.
+ */
+
+@Data
+@Entity
+@Table(name = "revoked_token", indexes = @Index(name = "revoked_token_expires_at_idx", columnList = "expires_at"))
+public class RevokedToken {
+    @Id
+    @Column(length = 36)
+    private String jti;
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
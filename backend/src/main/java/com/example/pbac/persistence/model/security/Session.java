@@ -1,7 +1,12 @@
 package com.example.pbac.persistence.model.security;
 
+import java.time.Instant;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.Data;
 
 /**
@@ -10,12 +15,19 @@ import lombok.Data;
  * que se inicia sesion en el sistema. Contiene los valores del Token de Acceso
  * y el Token para refrescar
  * el Token de Acceso.
+ *
+ * `expiresAt` es la expiración del token de acceso; está indexada para que
+ * `SessionReaper` elimine las sesiones expiradas por lotes.
  */
 
 @Data
 @Entity
+@Table(name = "session", indexes = @Index(name = "session_expires_at_idx", columnList = "expires_at"))
 public class Session {
     @Id
     private String refreshToken;
+    @Column(length = 1024)
     private String accessToken;
+    @Column(name = "expires_at")
+    private Instant expiresAt;
 }
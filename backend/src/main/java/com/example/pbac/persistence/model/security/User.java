@@ -1,16 +1,25 @@
 package com.example.pbac.persistence.model.security;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
-import java.util.List;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.Set;
 
 @Data
 @Entity
 @Table(name = "users")
 public class User {
+    // Secuencia con asignación por bloques (pooled): Hibernate reserva 50 ids por
+    // viaje y puede agrupar los INSERT en lotes JDBC, cosa que IDENTITY impide.
+    // En una base creada con IDENTITY, UserSequenceMigration mueve la secuencia
+    // por encima de max(id) al iniciar.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false, unique = true)
     private String username;
@@ -26,8 +35,18 @@ public class User {
     @Column(nullable = false)
     private boolean active;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Versión para concurrencia optimista y ETag de /user/{id}. Hibernate la
+    // incrementa en cada UPDATE, también al cambiar los roles asignados. El valor
+    // por defecto permite agregar la columna a una tabla con filas existentes
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "users_roles", joinColumns = @JoinColumn(name = "users_id"), inverseJoinColumns = @JoinColumn(name = "roles_id"))
-    private List<Role> roles;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<Role> roles;
 
 }
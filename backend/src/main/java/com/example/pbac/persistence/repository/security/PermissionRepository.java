@@ -1,11 +1,31 @@
 package com.example.pbac.persistence.repository.security;
 
+import java.util.Optional;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.pbac.persistence.model.security.Permission;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface PermissionRepository extends JpaRepository<Permission, Integer> {
-
+    /**
+     * Busca un permiso por su nombre.
+     *
+     * El resultado se guarda en la caché de consultas (región
+     * `security.by_name`); Hibernate la invalida cuando se escribe en la tabla
+     * `permission`.
+     *
+     * @param name El nombre del permiso.
+     * @return Un `Optional` con el permiso, o vacío si no existe.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "security.by_name")
+    })
+    Optional<Permission> findByName(String name);
 }
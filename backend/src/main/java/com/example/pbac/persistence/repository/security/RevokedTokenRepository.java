@@ -0,0 +1,37 @@
+package com.example.pbac.persistence.repository.security;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.example.pbac.persistence.model.security.RevokedToken;
+
+import jakarta.transaction.Transactional;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+    /**
+     * Obtiene los `jti` de los tokens revocados que aún no expiran, para
+     * reconstruir el filtro de Bloom.
+     *
+     * @param now Instante de referencia.
+     * @return Los `jti` con `expires_at` posterior a `now`.
+     */
+    @Query("SELECT r.jti FROM RevokedToken r WHERE r.expiresAt > ?1")
+    List<String> findActiveJtis(Instant now);
+
+    /**
+     * Elimina los tokens revocados que ya expiraron.
+     *
+     * @param now Instante de referencia.
+     * @return El número de filas eliminadas.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= ?1")
+    int deleteExpired(Instant now);
+}
@@ -1,11 +1,42 @@
 package com.example.pbac.persistence.repository.security;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.pbac.persistence.model.security.Role;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Integer> {
+    /**
+     * Busca un rol por su nombre.
+     *
+     * El resultado se guarda en la caché de consultas (región
+     * `security.by_name`); Hibernate la invalida cuando se escribe en la tabla
+     * `role`.
+     *
+     * @param name El nombre del rol.
+     * @return Un `Optional` con el rol, o vacío si no existe.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "security.by_name")
+    })
+    Optional<Role> findByName(String name);
 
+    /**
+     * Lista las asignaciones de permisos a roles, para la versión de
+     * `PermissionCatalog`.
+     *
+     * @return Cada asignación como `ROLE_<rol>:<permiso>`, ordenadas por id.
+     */
+    @Query("SELECT CONCAT('ROLE_', r.name, ':', p.name) FROM Role r JOIN r.permissions p ORDER BY r.id, p.id")
+    List<String> findGrants();
 }
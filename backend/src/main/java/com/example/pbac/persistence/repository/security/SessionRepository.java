@@ -1,5 +1,9 @@
 package com.example.pbac.persistence.repository.security;
 
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -7,6 +11,8 @@ import org.springframework.stereotype.Repository;
 
 import com.example.pbac.persistence.model.security.Session;
 
+import jakarta.transaction.Transactional;
+
 /**
  * Este archivo extiende a JpaRepository, lo cual permite realizar
  * operaciones CRUD (crear, leer, actualizar y eliminar) sobre la
@@ -16,21 +22,103 @@ import com.example.pbac.persistence.model.security.Session;
 @Repository
 public interface SessionRepository extends JpaRepository<Session, String> {
     /**
-     * - `update(String accessToken, String refreshToken, String oldRefreshToken)`:
-     * Actualiza los valores de los tokens de acceso y de refresco en la tabla
-     * `session` donde el `refresh_token` coincide con el valor proporcionado en el
-     * parámetro `oldRefreshToken`.
-     * Este método es útil para renovar los tokens de acceso y de refresco asociados
-     * con una sesión, utilizando un token de refresco existente.
-     *
-     * @param accessToken     El nuevo token de acceso que se actualizará en la base
-     *                        de datos.
-     * @param refreshToken    El nuevo token de refresco que se actualizará en la
-     *                        base de datos.
-     * @param oldRefreshToken El token de refresco actual que se utiliza como
-     *                        referencia para la actualización.
+     * Inserta una sesión nueva en una sola sentencia, sin la consulta previa que
+     * hace `save` con ids asignados.
+     *
+     * @param refreshToken El token de refresco de la sesión.
+     * @param accessToken  El token de acceso de la sesión.
+     * @param expiresAt    La expiración del token de acceso.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO session (refresh_token, access_token, expires_at) VALUES (?1, ?2, ?3)", nativeQuery = true)
+    public void insert(String refreshToken, String accessToken, Instant expiresAt);
+
+    /**
+     * - `rotate(String oldRefreshToken, String newRefreshToken, String accessToken, Instant expiresAt)`:
+     * Reemplaza el token de refresco, el token de acceso y la expiración de la
+     * sesión cuyo `refresh_token` coincide con `oldRefreshToken` y devuelve el
+     * token de acceso anterior, en una sola sentencia condicional. Si dos
+     * solicitudes rotan el mismo token a la vez, la base de datos serializa ambas
+     * actualizaciones y la segunda ya no encuentra la fila (al reevaluar el
+     * `WHERE`, su `refresh_token` cambió). Una sesión expirada no se rota, aunque
+     * `SessionReaper` todavía no la haya eliminado; las sesiones anteriores a
+     * `expires_at` (nula) sí.
+     *
+     * No lleva `@Modifying`: con él Spring Data ejecutaría la sentencia con
+     * `executeUpdate`, que solo devuelve el número de filas y descarta el
+     * `RETURNING`. Sin él se ejecuta como una consulta de un resultado; a cambio
+     * no vacía el contexto de persistencia, por lo que quien la llame no debe
+     * tener entidades `Session` administradas (los `SessionStore` no las tienen).
+     *
+     * @param oldRefreshToken El token de refresco actual.
+     * @param newRefreshToken El nuevo token de refresco.
+     * @param accessToken     El nuevo token de acceso.
+     * @param expiresAt       La expiración del nuevo token de acceso.
+     * @return El token de acceso anterior de la sesión rotada, o `null` si no
+     *         existe una sesión vigente con `oldRefreshToken`.
+     */
+    @Transactional
+    @Query(value = "UPDATE session SET refresh_token = ?2, access_token = ?3, expires_at = ?4 "
+            + "FROM (SELECT refresh_token, access_token FROM session WHERE refresh_token = ?1 "
+            + "AND (expires_at IS NULL OR expires_at > now())) AS previous "
+            + "WHERE session.refresh_token = previous.refresh_token RETURNING previous.access_token", nativeQuery = true)
+    public String rotate(String oldRefreshToken, String newRefreshToken, String accessToken, Instant expiresAt);
+
+    /**
+     * Elimina una sesión en una sola sentencia, sin la consulta previa que hace
+     * `deleteById`.
+     *
+     * @param refreshToken El token de refresco de la sesión.
+     * @return El número de filas eliminadas.
      */
+    @Transactional
     @Modifying
-    @Query(value = "UPDATE session SET access_token = ?1, refresh_token = ?2 WHERE refresh_token = ?3", nativeQuery = true)
-    public void update(String accessToken, String refreshToken, String oldRefreshToken);
+    @Query(value = "DELETE FROM session WHERE refresh_token = ?1", nativeQuery = true)
+    public int deleteByRefreshToken(String refreshToken);
+
+    /**
+     * Busca sesiones anteriores a la columna `expires_at`, que la tienen nula y
+     * por eso `deleteExpired` nunca las elimina.
+     *
+     * @param limit Número máximo de sesiones.
+     * @return Las sesiones sin `expires_at`.
+     */
+    public List<Session> findByExpiresAtIsNull(Limit limit);
+
+    /**
+     * Completa la expiración de una sesión que no la tiene. Si la sesión se rotó
+     * entretanto, ya tiene expiración (o cambió de token) y no se modifica.
+     *
+     * @param refreshToken El token de refresco de la sesión.
+     * @param expiresAt    La expiración de su token de acceso.
+     * @return El número de filas actualizadas.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE session SET expires_at = ?2 WHERE refresh_token = ?1 AND expires_at IS NULL", nativeQuery = true)
+    public int backfillExpiresAt(String refreshToken, Instant expiresAt);
+
+    /**
+     * Elimina un lote de sesiones expiradas. Las filas que otra transacción tiene
+     * bloqueadas (por ejemplo, una rotación en curso) se omiten en lugar de
+     * esperar por ellas.
+     *
+     * @param now       Instante de referencia; se eliminan las sesiones con
+     *                  `expires_at` anterior.
+     * @param batchSize Número máximo de filas a eliminar.
+     * @return El número de filas eliminadas.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM session WHERE refresh_token IN (SELECT refresh_token FROM session WHERE expires_at < ?1 LIMIT ?2 FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    public int deleteExpired(Instant now, int batchSize);
+
+    /**
+     * Cuenta las sesiones expiradas pendientes de eliminar.
+     *
+     * @param now Instante de referencia.
+     * @return El número de sesiones con `expires_at` anterior a `now`.
+     */
+    public long countByExpiresAtBefore(Instant now);
 }
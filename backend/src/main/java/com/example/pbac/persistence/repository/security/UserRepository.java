@@ -1,9 +1,12 @@
 package com.example.pbac.persistence.repository.security;
 
 import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.web.dto.UserSummaryDto;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -11,6 +14,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +38,72 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findByUsername(String username);
 
+    /**
+     * Busca un usuario por su nombre de usuario junto con sus roles y los
+     * permisos de cada rol, en una sola consulta. Al ser un fetch join, roles y
+     * permisos salen de la consulta y no de la caché de segundo nivel.
+     *
+     * @param username El nombre de usuario del usuario a buscar.
+     * @return Un `Optional` que contiene el usuario con su grafo de autorización
+     *         inicializado, o vacío si no se encuentra.
+     */
+    @EntityGraph(attributePaths = { "roles", "roles.permissions" })
+    Optional<User> findWithAuthoritiesByUsername(String username);
+
+    /**
+     * Lista todos los usuarios con sus roles en una sola consulta. Los permisos
+     * de cada rol no se cargan.
+     *
+     * @return La lista de usuarios.
+     */
+    @Override
+    @EntityGraph(attributePaths = { "roles" })
+    List<User> findAll();
+
+    /**
+     * Busca un usuario por su id junto con sus roles, en una sola consulta.
+     *
+     * @param id El id del usuario.
+     * @return Un `Optional` con el usuario, o vacío si no se encuentra.
+     */
+    @Override
+    @EntityGraph(attributePaths = { "roles" })
+    Optional<User> findById(Long id);
+
+    /**
+     * Lee solo la versión de un usuario, para revalidar su ETag sin cargar la
+     * entidad ni sus roles.
+     *
+     * @param id El id del usuario.
+     * @return Un `Optional` con la versión, o vacío si no se encuentra.
+     */
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Páginas del listado de usuarios con paginación por clave: cada página
+     * continúa después de la última clave (`id` o `username`, ambas únicas) de
+     * la anterior, usando el índice en lugar de un OFFSET. Solo se leen las
+     * columnas de `UserSummaryDto`.
+     *
+     * @param after Última clave de la página anterior.
+     * @param limit Número máximo de usuarios a devolver.
+     * @return Los usuarios de la página, en el orden indicado por el método.
+     */
+    List<UserSummaryDto> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    List<UserSummaryDto> findByIdLessThanOrderByIdDesc(Long after, Limit limit);
+
+    List<UserSummaryDto> findByUsernameGreaterThanOrderByUsernameAsc(String after, Limit limit);
+
+    List<UserSummaryDto> findByUsernameLessThanOrderByUsernameDesc(String after, Limit limit);
+
+    /**
+     * Primera página del listado ordenado por `username` descendente, que no
+     * tiene una clave inicial natural.
+     */
+    List<UserSummaryDto> findByOrderByUsernameDesc(Limit limit);
+
     /**
      * Busca un usuario por su dirección de correo electrónico.
      *
@@ -43,6 +113,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findByEmail(String email);
 
+    /**
+     * De los nombres de usuario dados, devuelve los que ya existen. Se usa en la
+     * importación masiva para descartar duplicados antes de insertar.
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * De los correos dados, devuelve los que ya existen.
+     */
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
     /**
      * Actualiza la contraseña de un usuario mediante su dirección de correo
      * electrónico.
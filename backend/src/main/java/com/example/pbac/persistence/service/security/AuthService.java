@@ -1,28 +1,38 @@
 package com.example.pbac.persistence.service.security;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Service;
 
-import com.example.pbac.persistence.model.security.Role;
 import com.example.pbac.persistence.model.security.Session;
 import com.example.pbac.persistence.model.security.User;
 import com.example.pbac.util.config.Config;
+import com.example.pbac.util.metrics.AuthMetrics;
+import com.example.pbac.web.dto.AuthorizationDecisionsDto;
+import com.example.pbac.web.dto.SessionBootstrapDto;
 import com.example.pbac.web.dto.UserDto;
 import com.example.pbac.web.security.Error;
 import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.ErrorResponses;
 import com.example.pbac.web.security.Result;
+import com.example.pbac.web.security.model.AuthorizationCheckRequest;
 import com.example.pbac.web.security.model.JwtAuthResponse;
 import com.example.pbac.web.security.model.LoginRequest;
 import com.example.pbac.web.security.model.RefreshTokenRequest;
 import com.example.pbac.web.security.model.UserFactory;
-import com.example.pbac.web.security.provider.PasswordEncoderProvider;
 import com.example.pbac.web.security.service.JwtService;
 import com.example.pbac.web.security.service.JwtService.ClaimWrapper;
+import com.example.pbac.web.security.service.JwtService.VerifiedToken;
+import com.example.pbac.web.security.service.PasswordHashingService;
+import com.example.pbac.web.security.service.PermissionCatalog;
 
 import lombok.RequiredArgsConstructor;
 
@@ -42,11 +52,14 @@ public class AuthService {
     private final Config config;
     private final UserService userService;
     private final SessionService sessionService;
-    private final AuthenticationManager authManager;
     private final JwtService jwtService;
-    private final PasswordEncoderProvider passwordEncoderProvider;
+    private final PasswordHashingService passwordHashingService;
+    private final PermissionCatalog permissionCatalog;
+    private final AuthMetrics authMetrics;
+    private final TokenRevocationService tokenRevocationService;
 
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
+    private static final String BEARER_PREFIX = "Bearer ";
 
     /**
      * Inicia sesión de un usuario y genera tokens JWT.
@@ -56,6 +69,13 @@ public class AuthService {
      * y genera un token de acceso y un token de actualización (refresh token).
      * También maneja la activación de la cuenta del usuario si es necesario.
      *
+     * La contraseña se verifica en `PasswordHashingService`; si su cola está
+     * llena, el inicio de sesión se rechaza antes de consultar la base de datos
+     * con un error `ServiceUnavailableError`.
+     *
+     * Las etapas se miden en `auth.login.stage`: `admission`, `lookup`,
+     * `verify_password`, `issue_token` y `save_session`.
+     *
      * @param request Un objeto `LoginRequest` que contiene el nombre de usuario y
      *                la contraseña del usuario.
      * @return Un objeto `Result` que contiene un `JwtAuthResponse` con los tokens
@@ -63,32 +83,42 @@ public class AuthService {
      */
     public Result<JwtAuthResponse, Error> login(LoginRequest request) {
         Result<JwtAuthResponse, Error> result = new Result<>();
-        var _user = userService.findByUsername(request.getUsername());
+        AuthMetrics.Stages stages = authMetrics.start("auth.login");
+        if (passwordHashingService.isSaturated()) {
+            return failed(result, stages, "admission", hashingUnavailable());
+        }
+        stages.completed("admission");
+
+        var _user = userService.findWithAuthoritiesByUsername(request.getUsername());
         if (_user.isEmpty()) {
-            result.setErr(new Error(String.format("El usuario %s no existe", request.getUsername()),
-                    String.format("User %s not found", request.getUsername()),
-                    ErrorKind.RepositoryError));
-            return result;
+            return failed(result, stages, "lookup",
+                    new Error(String.format("El usuario %s no existe", request.getUsername()),
+                            String.format("User %s not found", request.getUsername()),
+                            ErrorKind.RepositoryError));
         }
         User user = _user.get();
 
         if (!user.isActive()) {
-            result.setErr(new Error("El usuario no esta activo", "User is not active",
-                    ErrorKind.ServiceError));
-            return result;
+            return failed(result, stages, "lookup", ErrorResponses.DISABLED_USER);
         }
+        stages.completed("lookup");
 
-        if (!passwordEncoderProvider.passwordEncoder().matches(request.getPassword(), user.getPassword())) {
-            result.setErr(new Error("Contraseña incorrecta", "Passwords do not match",
-                    ErrorKind.ServiceError));
-            return result;
+        boolean passwordMatches;
+        try {
+            passwordMatches = passwordHashingService.matches(request.getPassword(), user.getPassword());
+        } catch (RejectedExecutionException err) {
+            return failed(result, stages, "verify_password", hashingUnavailable());
         }
 
-        // Autenticar al usuario
-        authManager.authenticate(new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
+        if (!passwordMatches) {
+            return failed(result, stages, "verify_password", new Error("Contraseña incorrecta",
+                    "Passwords do not match", ErrorKind.ServiceError));
+        }
+        stages.completed("verify_password");
 
-        var jwt = jwtService.generateAccessToken(new UserFactory(user));
-        var refreshToken = jwtService.generateRefreshToken();
+        var jwt = jwtService.generateAccessToken(new UserFactory(user, permissionCatalog.current()));
+        var refreshToken = jwtService.generateRefreshToken(user.getUsername());
+        stages.completed("issue_token");
 
         JwtAuthResponse response = new JwtAuthResponse();
         response.setAccessToken(jwt);
@@ -96,17 +126,44 @@ public class AuthService {
         Session session = new Session();
         session.setAccessToken(jwt);
         session.setRefreshToken(refreshToken);
-        sessionService.upsert(session, refreshToken);
+        session.setExpiresAt(Instant.now().plusMillis(config.expiration_millis));
+        sessionService.create(session);
+        stages.completed("save_session");
+        stages.succeeded();
         result.setOk(response);
         return result;
     }
 
+    private static <T> Result<T, Error> failed(Result<T, Error> result, AuthMetrics.Stages stages, String stage,
+            Error err) {
+        stages.failed(stage, err);
+        result.setErr(err);
+        return result;
+    }
+
+    private static Error hashingUnavailable() {
+        return new Error("El servicio está ocupado, intente nuevamente en unos segundos",
+                "Password hashing queue is full", ErrorKind.ServiceUnavailableError);
+    }
+
     /**
      * Refresca el token de acceso utilizando un token de actualización.
      *
-     * Este método valida la sesión utilizando el token de actualización
-     * proporcionado,
-     * y genera nuevos tokens de acceso y de actualización si la sesión es válida.
+     * El usuario sale del propio token de actualización (ver
+     * `JwtService.generateRefreshToken`), así que el nuevo token de acceso se
+     * firma antes de tocar la sesión. Un token cuyo HMAC no coincide se rechaza
+     * sin consultar nada. Luego la sesión se rota y recibe el nuevo
+     * token de acceso en una sola operación condicional: si la sesión no existe
+     * (o si otra solicitud ya la rotó) la operación falla. Si el token de acceso
+     * anterior de la sesión expiró, fue revocado con `logout` o no corresponde
+     * al usuario, la sesión recién rotada se elimina y el nuevo token nunca sale
+     * del servidor.
+     *
+     * Los tokens de actualización anteriores a ese formato (solo el UUID)
+     * requieren una consulta más para encontrar al usuario de la sesión.
+     *
+     * Las etapas se miden en `auth.refresh.stage`: `load_user`, `issue_token` y
+     * `rotate`.
      *
      * @param request Un objeto `RefreshTokenRequest` que contiene el token de
      *                actualización.
@@ -115,44 +172,111 @@ public class AuthService {
      */
     public Result<JwtAuthResponse, Error> refreshToken(RefreshTokenRequest request) {
         Result<JwtAuthResponse, Error> result = new Result<>();
-        Optional<Session> _session = sessionService.findById(request.getRefreshToken());
-        if (_session.isEmpty()) {
-            result.setErr(new Error("No hay una sesión valida.",
-                    "No se encontró una sesión que corresponda al token de refresco propocionado",
-                    ErrorKind.RepositoryError));
-            return result;
+        AuthMetrics.Stages stages = authMetrics.start("auth.refresh");
+        String presented = request.getRefreshToken();
+        Optional<String> username;
+        if (presented == null) {
+            username = Optional.empty();
+        } else if (jwtService.hasRefreshTokenSubject(presented)) {
+            username = jwtService.refreshTokenSubject(presented);
+        } else {
+            username = sessionService.findById(presented)
+                    .map(session -> jwtService.verify(session.getAccessToken()).getSubject());
+        }
+        if (username.isEmpty()) {
+            return failed(result, stages, "load_user", invalidSession());
         }
+        // Antes de rotar, todos los fallos responden lo mismo: la respuesta no
+        // debe revelar si el usuario existe o está desactivado
+        Optional<UserFactory> _user = userService.findUserFactory(username.get());
+        if (_user.isEmpty() || !_user.get().isEnabled()) {
+            return failed(result, stages, "load_user", invalidSession());
+        }
+        stages.completed("load_user");
 
-        String userEmail = jwtService.extractUsername(_session.get().getAccessToken()).getClaim();
-        Optional<User> _user = userService.findByUsername(userEmail);
-        if (_user.isEmpty()) {
-            result.setErr(new Error("No se encontró el usuario.",
-                    "No se encontró un usuario en el token de acceso proporcionado",
-                    ErrorKind.RepositoryError));
-            return result;
+        UserFactory user = _user.get();
+        String jwt = jwtService.generateAccessToken(user);
+        String refreshToken = jwtService.generateRefreshToken(user.getUsername());
+        stages.completed("issue_token");
+
+        Optional<String> previous = sessionService.rotate(presented, refreshToken, jwt,
+                Instant.now().plusMillis(config.expiration_millis));
+        if (previous.isEmpty()) {
+            return failed(result, stages, "rotate", invalidSession());
+        }
+        VerifiedToken oldAccessToken = jwtService.verify(previous.get());
+        Error err = null;
+        if (oldAccessToken.isExpired()) {
+            // La sesión vive lo mismo que su token de acceso
+            err = ErrorResponses.EXPIRED_TOKEN;
+        } else if (tokenRevocationService.isRevokedAnywhere(oldAccessToken.getJti())) {
+            err = ErrorResponses.REVOKED_TOKEN;
+        } else if (!jwtService.isTokenValid(oldAccessToken, user).isValid()) {
+            err = new Error("No se encontró el usuario.", "El token está comprometido / modificado, no es válido",
+                    ErrorKind.RepositoryError);
+        }
+        if (err != null) {
+            sessionService.delete(refreshToken);
+            return failed(result, stages, "rotate", err);
         }
+        stages.completed("rotate");
+        stages.succeeded();
 
-        UserFactory user = new UserFactory(_user.get());
+        JwtAuthResponse response = new JwtAuthResponse();
+        response.setAccessToken(jwt);
+        response.setRefreshToken(refreshToken);
+        result.setOk(response);
+        return result;
+    }
 
-        if (jwtService.isTokenValid(_session.get().getAccessToken(), user).isValid()) {
-            var jwt = jwtService.generateAccessToken(user);
-            var refreshToken = jwtService.generateRefreshToken();
+    private static Error invalidSession() {
+        return new Error("No hay una sesión valida.",
+                "No se encontró una sesión que corresponda al token de refresco propocionado",
+                ErrorKind.RepositoryError);
+    }
 
-            JwtAuthResponse response = new JwtAuthResponse();
-            response.setAccessToken(jwt);
-            response.setRefreshToken(refreshToken);
-            Session session = new Session();
-            session.setAccessToken(jwt);
-            session.setRefreshToken(refreshToken);
-            sessionService.upsert(session, request.getRefreshToken());
-            result.setOk(response);
+    /**
+     * Cierra la sesión revocando el token de acceso presentado hasta su
+     * expiración. El token deja de aceptarse en el filtro JWT (en las demás
+     * instancias, tras la siguiente reconstrucción del filtro de revocación) y
+     * la sesión ya no puede refrescarse.
+     *
+     * @param token El encabezado `Authorization` con el token de acceso.
+     * @return Un objeto `Result` con `true`, o el error si el token no es válido.
+     */
+    public Result<Boolean, Error> logout(String token) {
+        Result<Boolean, Error> result = new Result<>();
+        String bearer = bearerToken(token);
+        if (bearer == null) {
+            result.setErr(ErrorResponses.INVALID_TOKEN);
             return result;
-        } else {
-            result.setErr(new Error("No se encontró el usuario.",
-                    "El token está comprometido / modificado, no es válido",
-                    ErrorKind.RepositoryError));
+        }
+        VerifiedToken verified = jwtService.verify(bearer);
+        if (!verified.isValid()) {
+            result.setErr(verified.getErr());
+            return result;
+        }
+        if (verified.getJti() == null) {
+            result.setErr(new Error("La sesión no puede cerrarse, vuelva a iniciar sesión",
+                    "Token has no jti and cannot be revoked", ErrorKind.ServiceError));
             return result;
         }
+        tokenRevocationService.revoke(verified.getJti(), verified.getExpiration());
+        result.setOk(true);
+        return result;
+    }
+
+    /**
+     * @param header El encabezado `Authorization`.
+     * @return El token de un encabezado `Bearer <token>`, o `null` si el
+     *         encabezado falta, tiene otro esquema o no trae token.
+     */
+    private static String bearerToken(String header) {
+        if (header == null || header.length() <= BEARER_PREFIX.length()
+                || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        return header.substring(BEARER_PREFIX.length());
     }
 
     /**
@@ -171,7 +295,11 @@ public class AuthService {
      */
     public Result<UserDto, Error> getUserFromToken(String token) {
         Result<UserDto, Error> result = new Result<>();
-        token = token.substring(7);
+        token = bearerToken(token);
+        if (token == null) {
+            result.setErr(ErrorResponses.INVALID_TOKEN);
+            return result;
+        }
         ClaimWrapper<String> username = jwtService.extractUsername(token);
 
         Optional<User> _user = userService.findByUsername(username.getClaim());
@@ -191,10 +319,24 @@ public class AuthService {
         return result;
     }
 
+    /**
+     * Indica si el usuario del token tiene el rol dado. Las autoridades salen de
+     * la instantánea en caché del usuario (`UserService.findUserFactory`).
+     *
+     * @param accessToken El encabezado `Authorization` con el token de acceso.
+     * @param role        El nombre del rol, sin el prefijo `ROLE_`.
+     * @return Un objeto `Result` con la decisión, o un error si no se encuentra
+     *         el usuario.
+     */
     public Result<Boolean, Error> isAuthorized(String accessToken, String role) {
         Result<Boolean, Error> result = new Result<>();
-        String username = jwtService.extractUsername(accessToken.substring(7)).getClaim();
-        Optional<User> _user = userService.findByUsername(username);
+        String bearer = bearerToken(accessToken);
+        if (bearer == null) {
+            result.setErr(ErrorResponses.INVALID_TOKEN);
+            return result;
+        }
+        String username = jwtService.verify(bearer).getSubject();
+        Optional<UserFactory> _user = username == null ? Optional.empty() : userService.findUserFactory(username);
 
         if (_user.isEmpty()) {
             result.setErr(new Error("No se encontró el usuario.",
@@ -203,15 +345,101 @@ public class AuthService {
             return result;
         }
 
-        result.setOk(false);
-        for (Role r : _user.get().getRoles()) {
-            logger.warn(r.getName());
-            logger.warn(role);
-            if (r.getName().equals(role)) {
-                result.setOk(true);
+        logger.debug("Checking role {} for {}", role, username);
+        result.setOk(_user.get().hasAuthority(roleAuthority(role)));
+        return result;
+    }
+
+    /**
+     * Verifica varios roles y permisos del usuario autenticado en una sola
+     * llamada. El token ya fue verificado y las autoridades ya fueron resueltas
+     * por el filtro JWT, así que aquí no se parsea el token ni se consulta la
+     * base de datos: cada decisión es una prueba de bit sobre la instantánea.
+     *
+     * @param principal El usuario autenticado por el filtro JWT.
+     * @param request   Los roles (sin el prefijo `ROLE_`) y permisos a verificar.
+     * @return Un objeto `Result` con un mapa de decisiones por rol y por
+     *         permiso, en el orden de la solicitud.
+     */
+    public Result<AuthorizationDecisionsDto, Error> authorize(UserFactory principal,
+            AuthorizationCheckRequest request) {
+        Result<AuthorizationDecisionsDto, Error> result = new Result<>();
+        Map<String, Boolean> roles = new LinkedHashMap<>();
+        if (request.getRoles() != null) {
+            for (String role : request.getRoles()) {
+                roles.put(role, principal.hasAuthority(roleAuthority(role)));
+            }
+        }
+        Map<String, Boolean> permissions = new LinkedHashMap<>();
+        if (request.getPermissions() != null) {
+            for (String permission : request.getPermissions()) {
+                permissions.put(permission, principal.hasAuthority(permission));
             }
         }
+        result.setOk(new AuthorizationDecisionsDto(roles, permissions));
+        return result;
+    }
+
+    /**
+     * Obtiene la instantánea con la que se arma el arranque de sesión: la del
+     * propio usuario autenticado, o la de la caché de autoridades si el
+     * usuario se reconstruyó desde un token autocontenido (sin datos de perfil).
+     *
+     * @param principal El usuario autenticado por el filtro JWT.
+     * @return La instantánea, o vacío si el usuario ya no existe.
+     */
+    public Optional<UserFactory> findBootstrapSnapshot(UserFactory principal) {
+        if (principal.getId() != null) {
+            return Optional.of(principal);
+        }
+        return userService.findUserFactory(principal.getUsername());
+    }
+
+    /**
+     * ETag fuerte del arranque de sesión: la versión de autorización del
+     * usuario y la expiración del token, que también forma parte de la
+     * respuesta. Calcularlo no consulta la base de datos ni serializa nada.
+     *
+     * @param snapshot La instantánea del usuario.
+     * @param token    El token de acceso ya verificado.
+     * @return El ETag, entre comillas.
+     */
+    public String bootstrapETag(UserFactory snapshot, VerifiedToken token) {
+        return "\"" + snapshot.getAuthorizationVersion() + "-" + Long.toHexString(token.getExpiration().getTime())
+                + "\"";
+    }
 
+    /**
+     * Arma el arranque de sesión: datos del usuario, roles y permisos efectivos
+     * y la expiración del token.
+     *
+     * @param snapshot La instantánea del usuario.
+     * @param token    El token de acceso ya verificado.
+     * @return Un objeto `Result` con el `SessionBootstrapDto`.
+     */
+    public Result<SessionBootstrapDto, Error> bootstrap(UserFactory snapshot, VerifiedToken token) {
+        Result<SessionBootstrapDto, Error> result = new Result<>();
+        UserDto user = new UserDto();
+        user.setUser_id(snapshot.getId());
+        user.setUsername(snapshot.getUsername());
+        user.setEmail(snapshot.getEmail());
+        user.setFirstName(snapshot.getFirstname());
+        user.setLastName(snapshot.getLastname());
+
+        List<String> roles = new ArrayList<>();
+        List<String> permissions = new ArrayList<>();
+        for (String authority : snapshot.getAuthorityNames()) {
+            if (authority.startsWith("ROLE_")) {
+                roles.add(authority.substring(5));
+            } else {
+                permissions.add(authority);
+            }
+        }
+        result.setOk(new SessionBootstrapDto(user, roles, permissions, token.getExpiration().getTime()));
         return result;
     }
+
+    private static String roleAuthority(String role) {
+        return role.startsWith("ROLE_") ? role : "ROLE_" + role;
+    }
 }
@@ -0,0 +1,184 @@
+package com.example.pbac.persistence.service.security;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.web.security.service.AuthoritySnapshotCache;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * AuthorizationChangeListener recompila `PermissionCatalog` y vacía
+ * `AuthoritySnapshotCache` cuando se escribe un rol, un permiso o los permisos
+ * de un rol, sea cual sea el camino de la escritura (repositorio, `EntityManager`
+ * o importación).
+ *
+ * Se registra como listener de eventos de Hibernate: los eventos de entidad
+ * cubren altas, bajas y cambios de nombre, y los de colección los cambios en
+ * `roles_permissions`, que no disparan `@PostUpdate`. La recompilación se hace
+ * una vez por transacción, después de confirmarla, para no leer datos que
+ * todavía pueden deshacerse.
+ *
+ * Estos eventos solo llegan a la instancia que escribe. Las demás recompilan el
+ * catálogo cada `permission.catalog.refresh_millis` (ver `pollCatalog`), así
+ * que durante ese intervalo pueden seguir aceptando tokens autocontenidos
+ * emitidos con el catálogo anterior.
+ */
+
+@Component
+@RequiredArgsConstructor
+public class AuthorizationChangeListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizationChangeListener.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final PermissionCatalog permissionCatalog;
+    private final AuthoritySnapshotCache authorityCache;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void entityChanged(Object entity) {
+        if (entity instanceof Role || entity instanceof Permission) {
+            scheduleRefresh();
+        }
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof Role) {
+            scheduleRefresh();
+        }
+    }
+
+    /**
+     * Programa la recompilación para después de confirmar la transacción actual,
+     * una sola vez aunque la transacción escriba varios roles o permisos.
+     */
+    private void scheduleRefresh() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(AuthorizationChangeListener.this);
+            }
+        });
+    }
+
+    /**
+     * Recompila el catálogo para ver los cambios confirmados por otras
+     * instancias. Las instantáneas solo se vacían si la versión cambió.
+     */
+    @Scheduled(fixedDelayString = "${permission.catalog.refresh_millis:60000}",
+            initialDelayString = "${permission.catalog.refresh_millis:60000}")
+    public void pollCatalog() {
+        String version = permissionCatalog.current().getVersion();
+        try {
+            permissionCatalog.refresh();
+        } catch (RuntimeException err) {
+            logger.warn("Could not recompile the permission catalog, keeping version {}", version, err);
+            return;
+        }
+        if (!version.equals(permissionCatalog.current().getVersion())) {
+            authorityCache.clear();
+        }
+    }
+
+    /**
+     * Las instantáneas se vacían después de recompilar, para que no se vuelvan a
+     * cargar con el catálogo anterior.
+     */
+    private void refresh() {
+        // La escritura ya se confirmó: un fallo aquí no debe llegar a quien la hizo
+        try {
+            permissionCatalog.refresh();
+        } catch (RuntimeException err) {
+            logger.error("Could not recompile the permission catalog after a role or permission change", err);
+        } finally {
+            authorityCache.clear();
+        }
+    }
+}
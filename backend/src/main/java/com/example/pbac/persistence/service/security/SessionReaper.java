@@ -0,0 +1,124 @@
+package com.example.pbac.persistence.service.security;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.pbac.persistence.model.security.Session;
+import com.example.pbac.persistence.repository.security.SessionRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.service.JwtService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * SessionReaper elimina periódicamente de la tabla `session` las sesiones
+ * cuyo token de acceso ya expiró, para que la tabla y su índice se mantengan
+ * pequeños.
+ *
+ * El borrado se hace por lotes de `session.reaper.batch_size` filas, cada uno
+ * en su propia transacción corta, con una pausa de
+ * `session.reaper.pause_millis` entre lotes para no retener bloqueos ni
+ * saturar la base de datos.
+ *
+ * Las sesiones creadas antes de la columna `expires_at` la tienen nula y
+ * ninguna comparación las alcanzaría. Antes de cada pasada se les completa con
+ * la expiración de su token de acceso (o con `Instant.EPOCH` si el token no es
+ * válido), también por lotes, y así la misma pasada elimina las ya expiradas.
+ *
+ * Métricas: `session.reaper.reaped` (filas eliminadas) y
+ * `session.reaper.backlog` (sesiones expiradas al iniciar la última pasada).
+ */
+
+@Service
+@ConditionalOnProperty(name = "session.reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class SessionReaper {
+    private static final Logger logger = LoggerFactory.getLogger(SessionReaper.class);
+
+    private final SessionRepository repository;
+    private final JwtService jwtService;
+    private final Config config;
+    private final Counter reaped;
+    private final AtomicLong backlog = new AtomicLong();
+
+    public SessionReaper(SessionRepository repository, JwtService jwtService, Config config,
+            MeterRegistry registry) {
+        this.repository = repository;
+        this.jwtService = jwtService;
+        this.config = config;
+        this.reaped = Counter.builder("session.reaper.reaped")
+                .description("Expired sessions deleted by the reaper")
+                .register(registry);
+        Gauge.builder("session.reaper.backlog", backlog, AtomicLong::get)
+                .description("Expired sessions pending deletion at the start of the last run")
+                .register(registry);
+    }
+
+    /**
+     * Elimina las sesiones expiradas por lotes hasta que no quede ninguna.
+     */
+    @Scheduled(fixedDelayString = "${session.reaper.interval_millis:300000}")
+    public void reap() {
+        backfillLegacySessions();
+        Instant now = Instant.now();
+        backlog.set(repository.countByExpiresAtBefore(now));
+
+        long total = 0;
+        int deleted;
+        do {
+            deleted = repository.deleteExpired(now, config.session_reaper_batch_size);
+            total += deleted;
+            reaped.increment(deleted);
+            if (deleted == config.session_reaper_batch_size && !pause()) {
+                break;
+            }
+        } while (deleted == config.session_reaper_batch_size);
+
+        if (total > 0) {
+            logger.info("Reaped {} expired sessions", total);
+        }
+    }
+
+    /**
+     * Completa `expires_at` en las sesiones que no la tienen.
+     */
+    private void backfillLegacySessions() {
+        long total = 0;
+        List<Session> legacy;
+        do {
+            legacy = repository.findByExpiresAtIsNull(Limit.of(config.session_reaper_batch_size));
+            for (Session session : legacy) {
+                Date expiration = jwtService.verify(session.getAccessToken()).getExpiration();
+                total += repository.backfillExpiresAt(session.getRefreshToken(),
+                        expiration != null ? expiration.toInstant() : Instant.EPOCH);
+            }
+            if (legacy.size() == config.session_reaper_batch_size && !pause()) {
+                break;
+            }
+        } while (legacy.size() == config.session_reaper_batch_size);
+
+        if (total > 0) {
+            logger.info("Backfilled the expiration of {} legacy sessions", total);
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(config.session_reaper_pause_millis);
+            return true;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
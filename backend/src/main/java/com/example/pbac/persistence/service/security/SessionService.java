@@ -1,32 +1,26 @@
 package com.example.pbac.persistence.service.security;
 
+import java.time.Instant;
 import java.util.Optional;
-import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 
 import com.example.pbac.persistence.model.security.Session;
-import com.example.pbac.persistence.repository.security.SessionRepository;
-import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.persistence.store.security.SessionStore;
 
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 
 /**
  * Este archivo es el encargado de la gestión de los registros de la entidad
  * Session.
- * Para la creacion de estos metodos ocupamos los metodos creados en la capa
- * repository
- * y specification. El servicio maneja las respuestas con el tipo `Result` que
- * encapsula
- * tanto el valor correcto como el error (si ocurre).
+ * Las sesiones se guardan a través de `SessionStore`, cuya implementación
+ * (tabla `session` o memoria) se elige con la propiedad `session.store`.
  */
 
 @Service
 @RequiredArgsConstructor
 public class SessionService {
-    private final SessionRepository repository;
-    private final JwtService jwtService;
+    private final SessionStore store;
 
     /**
      * Busca una sesión en la base de datos utilizando el ID proporcionado.
@@ -40,32 +34,43 @@ public class SessionService {
      *         está vacío si no se encuentra.
      */
     public Optional<Session> findById(String id) {
-        return repository.findById(id);
+        return store.findById(id);
     }
 
     /**
-     * Inserta o actualiza una sesión en la base de datos.
+     * Guarda la sesión de un nuevo inicio de sesión.
      *
-     * Este método intenta encontrar una sesión existente utilizando el antiguo
-     * token de refresco (`oldRefreshToken`).
-     * Si la sesión no existe, se inserta una nueva. Si la sesión ya existe, se
-     * actualiza con los nuevos valores
-     * del token de acceso y token de refresco.
+     * @param session La sesión con los tokens recién generados.
+     * @return La sesión guardada.
+     */
+    public Session create(Session session) {
+        store.save(session);
+        return session;
+    }
+
+    /**
+     * Rota el token de refresco de una sesión y guarda su nuevo token de acceso
+     * en una sola operación condicional. El resultado decide si la rotación es
+     * válida: si otra solicitud ya rotó el mismo token, aquí se obtiene vacío.
+     *
+     * @param oldRefreshToken El token de refresco presentado por el cliente.
+     * @param newRefreshToken El nuevo token de refresco.
+     * @param accessToken     El nuevo token de acceso.
+     * @param expiresAt       La expiración del nuevo token de acceso.
+     * @return El token de acceso anterior de la sesión, o vacío si no existe una
+     *         sesión para `oldRefreshToken`.
+     */
+    public Optional<String> rotate(String oldRefreshToken, String newRefreshToken, String accessToken,
+            Instant expiresAt) {
+        return store.rotate(oldRefreshToken, newRefreshToken, accessToken, expiresAt);
+    }
+
+    /**
+     * Elimina una sesión.
      *
-     * @param session         La nueva sesión que debe ser insertada o actualizada.
-     * @param oldRefreshToken El token de refresco antiguo utilizado para buscar una
-     *                        sesión existente.
-     * @return La sesión insertada o actualizada.
+     * @param refreshToken El token de refresco de la sesión.
      */
-    @Transactional
-    public Session upsert(Session session, String oldRefreshToken) {
-        Optional<Session> oldSession = this.findById(oldRefreshToken);
-        if (oldSession.isEmpty()) {
-            repository.save(session);
-            return session;
-        } else {
-            repository.update(session.getAccessToken(), session.getRefreshToken().toString(), oldRefreshToken);
-            return session;
-        }
+    public void delete(String refreshToken) {
+        store.delete(refreshToken);
     }
 }
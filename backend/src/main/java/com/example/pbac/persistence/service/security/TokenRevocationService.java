@@ -0,0 +1,251 @@
+package com.example.pbac.persistence.service.security;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.pbac.persistence.model.security.RevokedToken;
+import com.example.pbac.persistence.repository.security.RevokedTokenRepository;
+import com.example.pbac.util.config.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * TokenRevocationService revoca tokens de acceso antes de su expiración (por
+ * su claim `jti`) y responde si un token fue revocado sin consultar la base de
+ * datos en cada solicitud.
+ *
+ * Los `jti` revocados se guardan en la tabla `revoked_token` y en un filtro de
+ * Bloom en memoria. Una consulta que el filtro descarta (el caso normal) cuesta
+ * unas pocas pruebas de bits; solo cuando el filtro da positivo se consulta la
+ * tabla, que es la fuente exacta.
+ *
+ * El filtro no admite borrados, así que se reconstruye cada
+ * `jwt.revocation.rebuild_millis` con los tokens revocados que aún no expiran,
+ * y en el mismo paso se eliminan de la tabla los expirados. La reconstrucción
+ * también incorpora las revocaciones hechas en otras instancias; hasta
+ * entonces, una instancia sigue aceptando los tokens revocados en otra (ver
+ * `/auth/logout`). `isRevokedAnywhere` consulta la tabla sin esa ventana.
+ *
+ * `revokeSubject` marca a un usuario (por ejemplo, al desactivarlo) con una
+ * fila cuyo `jti` se deriva de su nombre y que dura lo que un token de acceso.
+ * El filtro JWT deja entonces de confiar en sus tokens autocontenidos y carga
+ * el usuario, con lo que el estado y las autoridades vuelven a salir de la base
+ * de datos.
+ *
+ * Métricas: `auth.revocation.checks`, por `result` (`negative`,
+ * `false_positive` o `revoked`).
+ */
+
+@Service
+public class TokenRevocationService {
+
+    /**
+     * Filtro de Bloom de `m` bits (potencia de dos) con `k` funciones, obtenidas
+     * por doble hashing. Los bits se fijan con CAS, por lo que se puede leer y
+     * agregar desde varios hilos sin bloqueos.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long mask;
+        private final int hashes;
+
+        private BloomFilter(int expected, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = Math.max(64, Long.highestOneBit(Math.max(1, bits - 1)) << 1);
+            this.words = new AtomicLongArray((int) (bits >>> 6));
+            this.mask = bits - 1;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+        }
+
+        private void add(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                int word = (int) (bit >>> 6);
+                long flag = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & flag) == 0
+                        && !words.compareAndSet(word, current, current | flag)) {
+                    // Otro hilo modificó la palabra, se reintenta
+                }
+            }
+        }
+
+        private boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** FNV-1a de 64 bits. */
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        /** Mezcla final de MurmurHash3 (fmix64). */
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository repository;
+    private final Config config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter negative;
+    private final Counter falsePositive;
+    private final Counter revoked;
+
+    private volatile BloomFilter filter;
+
+    public TokenRevocationService(RevokedTokenRepository repository, Config config, MeterRegistry registry) {
+        this.repository = repository;
+        this.config = config;
+        this.filter = new BloomFilter(config.revocation_expected_tokens, config.revocation_false_positive_rate);
+        this.negative = Counter.builder("auth.revocation.checks").tag("result", "negative").register(registry);
+        this.falsePositive = Counter.builder("auth.revocation.checks").tag("result", "false_positive")
+                .register(registry);
+        this.revoked = Counter.builder("auth.revocation.checks").tag("result", "revoked").register(registry);
+    }
+
+    /**
+     * Revoca un token de acceso hasta su expiración.
+     *
+     * @param jti       El claim `jti` del token.
+     * @param expiresAt La expiración del token.
+     */
+    public void revoke(String jti, Date expiresAt) {
+        RevokedToken token = new RevokedToken();
+        token.setJti(jti);
+        token.setExpiresAt(expiresAt.toInstant());
+        repository.save(token);
+
+        // Con el candado, una reconstrucción en curso no puede reemplazar el
+        // filtro por uno que se leyó de la tabla antes de esta revocación
+        lock.lock();
+        try {
+            filter.add(jti);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja de aceptar las autoridades de los tokens autocontenidos emitidos
+     * hasta ahora para un usuario (ver `isSubjectRevoked`).
+     *
+     * @param username El nombre de usuario.
+     */
+    public void revokeSubject(String username) {
+        revoke(subjectKey(username), new Date(System.currentTimeMillis() + config.expiration_millis));
+    }
+
+    /**
+     * @param username El subject de un token.
+     * @return `true` si el usuario se marcó con `revokeSubject` hace menos de lo
+     *         que dura un token de acceso.
+     */
+    public boolean isSubjectRevoked(String username) {
+        return username != null && isRevoked(subjectKey(username));
+    }
+
+    /**
+     * Un UUID de nombre (versión 3) no coincide con los `jti` aleatorios y cabe
+     * en la columna `jti`.
+     */
+    private static String subjectKey(String username) {
+        return UUID.nameUUIDFromBytes(("sub:" + username).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * @param jti El claim `jti` del token; los tokens emitidos antes de que
+     *            existiera no pueden revocarse.
+     * @return `true` si el token fue revocado.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            negative.increment();
+            return false;
+        }
+        if (repository.existsById(jti)) {
+            revoked.increment();
+            return true;
+        }
+        falsePositive.increment();
+        return false;
+    }
+
+    /**
+     * Igual que `isRevoked`, pero consulta siempre la tabla: ve también las
+     * revocaciones hechas en otras instancias que el filtro aún no incorpora.
+     * Es para caminos poco frecuentes, como el refresco de la sesión.
+     *
+     * @param jti El claim `jti` del token.
+     * @return `true` si el token fue revocado.
+     */
+    public boolean isRevokedAnywhere(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        boolean found = repository.existsById(jti);
+        (found ? revoked : filter.mightContain(jti) ? falsePositive : negative).increment();
+        return found;
+    }
+
+    /**
+     * Elimina de la tabla los tokens revocados ya expirados y reconstruye el
+     * filtro con los restantes. Si hay más que `jwt.revocation.expected_tokens`,
+     * el filtro se dimensiona para el doble de los actuales.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${jwt.revocation.rebuild_millis:300000}",
+            initialDelayString = "${jwt.revocation.rebuild_millis:300000}")
+    public void rebuild() {
+        Instant now = Instant.now();
+        int deleted = repository.deleteExpired(now);
+
+        lock.lock();
+        try {
+            List<String> jtis = repository.findActiveJtis(now);
+            BloomFilter rebuilt = new BloomFilter(Math.max(config.revocation_expected_tokens, jtis.size() * 2),
+                    config.revocation_false_positive_rate);
+            for (String jti : jtis) {
+                rebuilt.add(jti);
+            }
+            filter = rebuilt;
+            logger.debug("Rebuilt revocation filter with {} tokens ({} expired removed)", jtis.size(), deleted);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
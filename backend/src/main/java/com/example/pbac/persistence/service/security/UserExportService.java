@@ -0,0 +1,119 @@
+package com.example.pbac.persistence.service.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pbac.util.config.Config;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * UserExportService exporta usuarios como JSON delimitado por saltos de línea
+ * (NDJSON), una fila por línea, con los mismos campos que `UserSummaryDto`.
+ *
+ * Las filas se leen con un cursor de solo avance (`user.export.fetch_size`
+ * filas por viaje a la base de datos; en PostgreSQL esto requiere una
+ * transacción) y se escriben al flujo a medida que llegan, sin crear entidades
+ * ni acumular la lista. La memoria usada no depende del número de usuarios.
+ */
+
+@Service
+public class UserExportService {
+    private static final String SELECT = "SELECT u.id, u.username, u.email, u.firstname, u.lastname, u.active FROM users u";
+    private static final String HAS_ROLE = "EXISTS (SELECT 1 FROM users_roles ur JOIN role r ON r.id = ur.roles_id"
+            + " WHERE ur.users_id = u.id AND r.name = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Config config;
+
+    public UserExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper, Config config) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.config = config;
+    }
+
+    /**
+     * Escribe los usuarios en `out`, ordenados por id.
+     *
+     * @param active Si no es `null`, solo exporta usuarios con ese estado.
+     * @param role   Si no es `null`, solo exporta usuarios con ese rol.
+     * @param out    Flujo de salida; no se cierra.
+     * @return El número de usuarios exportados.
+     */
+    public long export(Boolean active, String role, OutputStream out) {
+        List<String> conditions = new ArrayList<>(2);
+        List<Object> args = new ArrayList<>(2);
+        if (active != null) {
+            conditions.add("u.active = ?");
+            args.add(active);
+        }
+        if (role != null) {
+            conditions.add(HAS_ROLE);
+            args.add(role);
+        }
+        String sql = conditions.isEmpty() ? SELECT + " ORDER BY u.id"
+                : SELECT + " WHERE " + String.join(" AND ", conditions) + " ORDER BY u.id";
+        int fetchSize = config.user_export_fetch_size;
+
+        return transactionTemplate.execute(status -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                json.setRootValueSeparator(null);
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                long[] rows = { 0 };
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    for (int i = 0; i < args.size(); i++) {
+                        statement.setObject(i + 1, args.get(i));
+                    }
+                    return statement;
+                }, resultSet -> {
+                    try {
+                        writeRow(json, resultSet);
+                        // Se vacía cada lote para que el cliente reciba datos mientras se
+                        // leen los siguientes
+                        if (++rows[0] % fetchSize == 0) {
+                            json.flush();
+                        }
+                    } catch (IOException err) {
+                        throw new UncheckedIOException(err);
+                    }
+                });
+                json.flush();
+                return rows[0];
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        });
+    }
+
+    private static void writeRow(JsonGenerator json, ResultSet resultSet) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField("id", resultSet.getLong(1));
+        json.writeStringField("username", resultSet.getString(2));
+        json.writeStringField("email", resultSet.getString(3));
+        json.writeStringField("firstname", resultSet.getString(4));
+        json.writeStringField("lastname", resultSet.getString(5));
+        json.writeBooleanField("active", resultSet.getBoolean(6));
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.pbac.persistence.service.security;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.persistence.repository.security.UserRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.dto.UserImportReportDto;
+import com.example.pbac.web.dto.UserImportRowDto;
+import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.Result;
+import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * UserImportService importa usuarios en bloque desde CSV o NDJSON.
+ *
+ * La entrada se lee línea por línea y se procesa en bloques de
+ * `user.import.chunk_size` filas. Por cada bloque:
+ *
+ * 1. Se validan las filas y se descartan las que repiten un usuario o correo
+ * (en el archivo o en la base de datos) o usan un rol inexistente. Asignar un
+ * rol distinto del predeterminado requiere además `user_assignRole`.
+ * 2. Las contraseñas se codifican en paralelo en un grupo propio de
+ * `user.import.threads` hilos, para no ocupar el grupo que atiende los inicios
+ * de sesión.
+ * 3. Los usuarios se insertan en una transacción con `persist` + `flush`;
+ * gracias a la secuencia `users_seq` Hibernate agrupa los INSERT de `users` y
+ * `users_roles` en lotes JDBC (`hibernate.jdbc.batch_size`).
+ *
+ * Si el bloque falla en la base de datos, se reintenta fila por fila para
+ * aislar las filas con error sin perder el resto. Solo se ejecuta una
+ * importación a la vez.
+ */
+
+@Service
+public class UserImportService {
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String ROLE_ASSIGNMENT_AUTHORITY = "user_assignRole";
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+    private static final List<String> CSV_COLUMNS = List.of("username", "email", "password", "firstname",
+            "lastname", "address", "number", "profileImage", "roles");
+
+    /**
+     * Una fila leída, con su número de línea y, una vez procesada, el hash de su
+     * contraseña.
+     */
+    private static final class Row {
+        private final long line;
+        private final UserImportRowDto data;
+        private List<Integer> roleIds;
+        private String passwordHash;
+
+        private Row(long line, UserImportRowDto data) {
+            this.line = line;
+            this.data = data;
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Config config;
+    private final ExecutorService hashingExecutor;
+    private final ReentrantLock importLock = new ReentrantLock();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserImportService(UserRepository userRepository, RoleRepository roleRepository,
+            PasswordEncoderProvider passwordEncoderProvider, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper, Config config) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoderProvider.passwordEncoder();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.config = config;
+        int threads = config.user_import_threads > 0 ? config.user_import_threads
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashingExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Importa los usuarios de `input`.
+     *
+     * @param input       Contenido CSV (con encabezado) o NDJSON, en UTF-8.
+     * @param contentType    `text/csv` o `application/x-ndjson`.
+     * @param canAssignRoles Si quien importa tiene `ROLE_ASSIGNMENT_AUTHORITY`.
+     *                       Sin ella, las filas que piden un rol distinto del
+     *                       predeterminado se rechazan.
+     * @return Un `Result` con el reporte de la importación, o un error
+     *         `ServiceUnavailableError` si ya hay otra importación en curso.
+     */
+    public Result<UserImportReportDto, Error> importUsers(InputStream input, String contentType,
+            boolean canAssignRoles) {
+        Result<UserImportReportDto, Error> result = new Result<>();
+        if (!importLock.tryLock()) {
+            result.setErr(new Error("Ya hay una importación en curso, intente más tarde",
+                    "Another user import is running", ErrorKind.ServiceUnavailableError));
+            return result;
+        }
+
+        try {
+            boolean csv = contentType != null && contentType.startsWith(CSV);
+            UserImportReportDto report = new UserImportReportDto();
+            Map<String, Optional<Integer>> roleIds = new HashMap<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            List<String> header = csv ? readCsvHeader(reader) : null;
+            long line = csv ? 1 : 0;
+            List<Row> chunk = new ArrayList<>(config.user_import_chunk_size);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                report.setTotal(report.getTotal() + 1);
+                try {
+                    chunk.add(new Row(line, csv ? parseCsv(header, text) : parseNdjson(text)));
+                } catch (IllegalArgumentException err) {
+                    fail(report, line, null, err.getMessage());
+                }
+                if (chunk.size() == config.user_import_chunk_size) {
+                    importChunk(chunk, roleIds, canAssignRoles, report);
+                    chunk.clear();
+                }
+            }
+            importChunk(chunk, roleIds, canAssignRoles, report);
+            logger.info("User import finished: {} rows, {} imported, {} failed", report.getTotal(),
+                    report.getImported(), report.getFailed());
+            result.setOk(report);
+        } catch (IllegalArgumentException err) {
+            result.setErr(new Error(err.getMessage(), "Invalid import file", ErrorKind.ServiceError));
+        } catch (IOException err) {
+            result.setErr(new Error("No se pudo leer el archivo de importación", err.getMessage(),
+                    ErrorKind.ServiceError));
+        } finally {
+            importLock.unlock();
+        }
+        return result;
+    }
+
+    private void importChunk(List<Row> chunk, Map<String, Optional<Integer>> roleIds, boolean canAssignRoles,
+            UserImportReportDto report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Row> valid = validate(chunk, roleIds, canAssignRoles, report);
+        if (valid.isEmpty()) {
+            return;
+        }
+        hashPasswords(valid);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(valid));
+            report.setImported(report.getImported() + valid.size());
+        } catch (DataIntegrityViolationException | PersistenceException err) {
+            // Algún conflicto que la validación no vio (p. ej. una inserción
+            // concurrente): se aíslan las filas con error
+            logger.debug("Chunk insert failed, retrying row by row: {}", err.getMessage());
+            for (Row row : valid) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persist(List.of(row)));
+                    report.setImported(report.getImported() + 1);
+                } catch (DataIntegrityViolationException | PersistenceException rowErr) {
+                    fail(report, row.line, row.data.getUsername(), "El usuario o el correo ya existen");
+                }
+            }
+        }
+    }
+
+    private List<Row> validate(List<Row> chunk, Map<String, Optional<Integer>> roleIds, boolean canAssignRoles,
+            UserImportReportDto report) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<Row> candidates = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            UserImportRowDto data = row.data;
+            String message = null;
+            if (isBlank(data.getUsername())) {
+                message = "Falta el nombre de usuario";
+            } else if (isBlank(data.getEmail())) {
+                message = "Falta el correo";
+            } else if (isBlank(data.getPassword())) {
+                message = "Falta la contraseña";
+            } else if (!usernames.add(data.getUsername())) {
+                message = "El nombre de usuario está repetido en el archivo";
+            } else if (!emails.add(data.getEmail())) {
+                message = "El correo está repetido en el archivo";
+            } else {
+                message = resolveRoles(row, roleIds, canAssignRoles);
+            }
+
+            if (message != null) {
+                fail(report, row.line, data.getUsername(), message);
+            } else {
+                candidates.add(row);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        Set<String> existingUsernames = new HashSet<>(userRepository.findExistingUsernames(
+                candidates.stream().map(row -> row.data.getUsername()).toList()));
+        Set<String> existingEmails = new HashSet<>(userRepository.findExistingEmails(
+                candidates.stream().map(row -> row.data.getEmail()).toList()));
+        List<Row> valid = new ArrayList<>(candidates.size());
+        for (Row row : candidates) {
+            if (existingUsernames.contains(row.data.getUsername())) {
+                fail(report, row.line, row.data.getUsername(), "El nombre de usuario ya existe");
+            } else if (existingEmails.contains(row.data.getEmail())) {
+                fail(report, row.line, row.data.getUsername(), "El correo ya existe");
+            } else {
+                valid.add(row);
+            }
+        }
+        return valid;
+    }
+
+    private String resolveRoles(Row row, Map<String, Optional<Integer>> roleIds, boolean canAssignRoles) {
+        String defaultRole = Role.getDefault().getName();
+        List<String> names = row.data.getRoles() == null || row.data.getRoles().isEmpty()
+                ? List.of(defaultRole)
+                : row.data.getRoles();
+        List<Integer> ids = new ArrayList<>(names.size());
+        for (String name : names) {
+            // `user_create` solo alcanza para crear usuarios con el rol predeterminado
+            if (!canAssignRoles && !defaultRole.equals(name)) {
+                return String.format("No tiene permiso para asignar el rol %s", name);
+            }
+            Optional<Integer> id = roleIds.computeIfAbsent(name,
+                    key -> roleRepository.findByName(key).map(Role::getId));
+            if (id.isEmpty()) {
+                return String.format("El rol %s no existe", name);
+            }
+            ids.add(id.get());
+        }
+        row.roleIds = ids;
+        return null;
+    }
+
+    private void hashPasswords(List<Row> rows) {
+        List<Callable<String>> tasks = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            String password = row.data.getPassword();
+            tasks.add(() -> passwordEncoder.encode(password));
+        }
+        try {
+            List<Future<String>> hashes = hashingExecutor.invokeAll(tasks);
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i).passwordHash = hashes.get(i).get();
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing imported passwords", err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException(err.getCause());
+        }
+    }
+
+    private void persist(List<Row> rows) {
+        for (Row row : rows) {
+            UserImportRowDto data = row.data;
+            User user = new User();
+            user.setUsername(data.getUsername());
+            user.setEmail(data.getEmail());
+            user.setPassword(row.passwordHash);
+            user.setFirstname(data.getFirstname());
+            user.setLastname(data.getLastname());
+            user.setAddress(data.getAddress());
+            user.setNumber(data.getNumber());
+            user.setProfileImage(data.getProfileImage());
+            user.setActive(true);
+            Set<Role> roles = new HashSet<>();
+            for (Integer roleId : row.roleIds) {
+                roles.add(entityManager.getReference(Role.class, roleId));
+            }
+            user.setRoles(roles);
+            entityManager.persist(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void fail(UserImportReportDto report, long line, String username, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < config.user_import_max_reported_errors) {
+            report.getErrors().add(new UserImportReportDto.RowError(line, username, message));
+        }
+    }
+
+    private List<String> readCsvHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IllegalArgumentException("El archivo CSV está vacío");
+        }
+        List<String> columns = splitCsv(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        for (String column : columns) {
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException(String.format("Columna CSV desconocida: %s", column));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Convierte una línea CSV según el encabezado. `roles` admite varios nombres
+     * separados por `|`.
+     */
+    private static UserImportRowDto parseCsv(List<String> header, String text) {
+        List<String> values = splitCsv(text);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException(String.format("Se esperaban %d columnas y hay %d", header.size(),
+                    values.size()));
+        }
+        UserImportRowDto row = new UserImportRowDto();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            switch (header.get(i)) {
+                case "username" -> row.setUsername(value);
+                case "email" -> row.setEmail(value);
+                case "password" -> row.setPassword(value);
+                case "firstname" -> row.setFirstname(value);
+                case "lastname" -> row.setLastname(value);
+                case "address" -> row.setAddress(value);
+                case "profileImage" -> row.setProfileImage(value);
+                case "number" -> {
+                    try {
+                        row.setNumber(value == null ? null : Integer.valueOf(value));
+                    } catch (NumberFormatException err) {
+                        throw new IllegalArgumentException(String.format("Número no válido: %s", value));
+                    }
+                }
+                case "roles" -> row.setRoles(value == null ? null : Arrays.asList(value.split("\\|")));
+                default -> {
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Separa una línea CSV (RFC 4180 sin saltos de línea dentro de campos):
+     * campos separados por coma, opcionalmente entre comillas dobles, con `""`
+     * como comilla escapada.
+     */
+    private static List<String> splitCsv(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private UserImportRowDto parseNdjson(String text) {
+        try {
+            return objectMapper.readValue(text, UserImportRowDto.class);
+        } catch (JsonProcessingException err) {
+            throw new IllegalArgumentException("JSON no válido");
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+    }
+}
@@ -3,16 +3,23 @@ package com.example.pbac.persistence.service.security;
 import com.example.pbac.persistence.model.security.User;
 import com.example.pbac.persistence.model.security.Role;
 import com.example.pbac.persistence.repository.security.UserRepository;
+import com.example.pbac.util.config.Config;
 import com.example.pbac.web.dto.NewUserDto;
+import com.example.pbac.web.dto.UserPageDto;
+import com.example.pbac.web.dto.UserSummaryDto;
 import com.example.pbac.web.security.Error;
 import com.example.pbac.web.security.ErrorKind;
 import com.example.pbac.web.security.Result;
 import com.example.pbac.web.security.model.UserFactory;
 //import com.example.pbac.web.security.model.RegisterRequest;
-import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+import com.example.pbac.web.security.service.AuthoritySnapshotCache;
+import com.example.pbac.web.security.service.PasswordHashingService;
+import com.example.pbac.web.security.service.PermissionCatalog;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -24,32 +31,130 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
-    private final PasswordEncoderProvider passwordEncoderProvider;
+    private final PasswordHashingService passwordHashingService;
     private final UserRepository repository;
+    private final AuthoritySnapshotCache authorityCache;
+    private final PermissionCatalog permissionCatalog;
+    private final Config config;
+    private final TokenRevocationService tokenRevocationService;
 
+    // Se crean una sola vez: el filtro JWT los usa en cada solicitud
+    private final Function<String, UserFactory> userFactoryLoader = this::loadUserFactory;
+    private final UserDetailsService userDetailsService = this::loadCachedUserFactory;
+
+    /**
+     * Devuelve el `UserDetailsService` usado por el filtro JWT y el proveedor de
+     * autenticación. Las instantáneas se sirven desde `AuthoritySnapshotCache`
+     * y solo se consulta la base de datos cuando no están en caché.
+     */
     public UserDetailsService userDetailsService() {
-        return new UserDetailsService() {
-            @Override
-            public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-                User user = repository.findByUsername(username)
-                        .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado"));
+        return userDetailsService;
+    }
 
-                UserFactory userDetails = new UserFactory(user);
+    /**
+     * Obtiene la instantánea de autoridades de un usuario desde la caché, o de
+     * la base de datos si no está en caché.
+     *
+     * @param username El nombre de usuario.
+     * @return Un `Optional` con la instantánea, o vacío si el usuario no existe.
+     */
+    public Optional<UserFactory> findUserFactory(String username) {
+        try {
+            return Optional.of(loadCachedUserFactory(username));
+        } catch (UsernameNotFoundException err) {
+            return Optional.empty();
+        }
+    }
 
-                return userDetails;
-            }
-        };
+    private UserFactory loadCachedUserFactory(String username) {
+        return authorityCache.get(username, userFactoryLoader);
+    }
+
+    private UserFactory loadUserFactory(String username) {
+        User user = repository.findWithAuthoritiesByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado"));
+
+        return new UserFactory(user, permissionCatalog.current());
     }
 
     public List<User> findAll() {
         return repository.findAll();
     }
 
+    /**
+     * Obtiene una página del listado de usuarios con paginación por clave.
+     *
+     * @param sort      Campo de orden: `id` (por defecto) o `username`.
+     * @param direction `asc` (por defecto) o `desc`.
+     * @param after     Valor `next` de la página anterior, o `null` para la
+     *                  primera página.
+     * @param size      Tamaño de página; si es `null` se usa
+     *                  `user.page.default_size`, y nunca supera
+     *                  `user.page.max_size`.
+     * @return Un `Result` con la página, o un error si los parámetros no son
+     *         válidos.
+     */
+    public Result<UserPageDto, Error> findPage(String sort, String direction, String after, Integer size) {
+        Result<UserPageDto, Error> result = new Result<>();
+        int pageSize = size == null ? config.user_page_default_size : size;
+        if (pageSize < 1) {
+            result.setErr(new Error("El tamaño de página debe ser mayor que cero",
+                    String.format("Invalid page size: %d", pageSize), ErrorKind.ServiceError));
+            return result;
+        }
+        pageSize = Math.min(pageSize, config.user_page_max_size);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        if (!descending && direction != null && !"asc".equalsIgnoreCase(direction)) {
+            result.setErr(new Error("Dirección de orden no válida",
+                    String.format("Invalid sort direction: %s", direction), ErrorKind.ServiceError));
+            return result;
+        }
+
+        // Se pide un usuario de más para saber si hay una página siguiente
+        Limit limit = Limit.of(pageSize + 1);
+        List<UserSummaryDto> users;
+        if (sort == null || "id".equals(sort)) {
+            Long key;
+            try {
+                key = after == null ? null : Long.valueOf(after);
+            } catch (NumberFormatException err) {
+                result.setErr(new Error("Cursor de página no válido",
+                        String.format("Invalid page cursor: %s", after), ErrorKind.ServiceError));
+                return result;
+            }
+            users = descending
+                    ? repository.findByIdLessThanOrderByIdDesc(key == null ? Long.MAX_VALUE : key, limit)
+                    : repository.findByIdGreaterThanOrderByIdAsc(key == null ? 0L : key, limit);
+        } else if ("username".equals(sort)) {
+            if (descending) {
+                users = after == null ? repository.findByOrderByUsernameDesc(limit)
+                        : repository.findByUsernameLessThanOrderByUsernameDesc(after, limit);
+            } else {
+                users = repository.findByUsernameGreaterThanOrderByUsernameAsc(after == null ? "" : after, limit);
+            }
+        } else {
+            result.setErr(new Error("Campo de orden no válido", String.format("Invalid sort field: %s", sort),
+                    ErrorKind.ServiceError));
+            return result;
+        }
+
+        String next = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            UserSummaryDto last = users.get(pageSize - 1);
+            next = "username".equals(sort) ? last.getUsername() : String.valueOf(last.getId());
+        }
+        result.setOk(new UserPageDto(users, next));
+        return result;
+    }
+
     public Result<User, Error> findById(Long id) {
         Result<User, Error> result = new Result<>();
         Optional<User> _user = repository.findById(id);
@@ -67,7 +172,12 @@ public class UserService {
         Result<User, Error> result = new Result<>();
         User newUser = new User();
         newUser.setUsername(_newUser.getUsername());
-        newUser.setPassword(passwordEncoderProvider.passwordEncoder().encode(_newUser.getPassword()));
+        try {
+            newUser.setPassword(passwordHashingService.encode(_newUser.getPassword()));
+        } catch (RejectedExecutionException err) {
+            result.setErr(hashingUnavailable());
+            return result;
+        }
         newUser.setEmail(_newUser.getEmail());
         newUser.setFirstname(_newUser.getFirstname());
         newUser.setLastname(_newUser.getLastname());
@@ -78,6 +188,7 @@ public class UserService {
 
         try {
             repository.save(newUser);
+            authorityCache.evict(newUser.getUsername());
         } catch (IllegalArgumentException err) {
             result.setErr(new Error("Error al registrar el nuevo usuario", "Error in UserService.create",
                     ErrorKind.RepositoryError));
@@ -88,30 +199,104 @@ public class UserService {
         return result;
     }
 
-    public Result<User, Error> update(User user) {
+    /**
+     * Obtiene la versión de un usuario sin cargar la entidad, para revalidar
+     * el ETag de `/user/{id}`.
+     *
+     * @param id El id del usuario.
+     * @return Un `Optional` con la versión, o vacío si el usuario no existe.
+     */
+    public Optional<Long> findVersion(Long id) {
+        return repository.findVersionById(id);
+    }
+
+    /**
+     * Actualiza un usuario con los campos no nulos de `user`.
+     *
+     * La contraseña solo se codifica si cambió: una contraseña vacía o igual al
+     * hash guardado (el cliente reenvió la entidad tal como la leyó) se conserva
+     * sin pasar por BCrypt. Si ningún campo cambió, no se escribe la fila.
+     *
+     * @param user            Los nuevos datos; `id` identifica al usuario.
+     * @param expectedVersion La versión que el cliente leyó (`If-Match`), o
+     *                        `null` para no comprobarla.
+     * @return Un objeto `Result` con el usuario actualizado, o un error
+     *         `PreconditionFailedError` si otra modificación se adelantó.
+     */
+    public Result<User, Error> update(User user, Long expectedVersion) {
         Result<User, Error> result = new Result<>();
-        Optional<User> _user = repository.findById(user.getId());
+        Optional<User> _user = user.getId() == null ? Optional.empty() : repository.findById(user.getId());
         if (_user.isEmpty()) {
             result.setErr(new Error("Error al actualizar el usuario, no existe", "Error in UserService.update",
                     ErrorKind.RepositoryError));
             return result;
         }
 
-        user = _user.get();
+        // Se descarta antes de cualquier trabajo de BCrypt o escritura
+        User current = _user.get();
+        if (expectedVersion != null && expectedVersion != current.getVersion()) {
+            result.setErr(versionConflict(current.getId()));
+            return result;
+        }
+
+        String previousUsername = current.getUsername();
+        if (user.getUsername() != null) {
+            current.setUsername(user.getUsername());
+        }
+        if (user.getEmail() != null) {
+            current.setEmail(user.getEmail());
+        }
+        if (user.getFirstname() != null) {
+            current.setFirstname(user.getFirstname());
+        }
+        if (user.getLastname() != null) {
+            current.setLastname(user.getLastname());
+        }
+        if (user.getAddress() != null) {
+            current.setAddress(user.getAddress());
+        }
+        if (user.getNumber() != null) {
+            current.setNumber(user.getNumber());
+        }
+        if (user.getProfileImage() != null) {
+            current.setProfileImage(user.getProfileImage());
+        }
 
         try {
-            user.setPassword(passwordEncoderProvider.passwordEncoder().encode(user.getPassword()));
-            repository.save(user);
+            String password = user.getPassword();
+            if (password != null && !password.isBlank() && !password.equals(current.getPassword())) {
+                current.setPassword(passwordHashingService.encode(password));
+            }
+            // Con open-in-view `current` sigue administrada y `save` no la
+            // fusiona: el UPDATE sale al confirmar la transacción de `save`, con
+            // `WHERE version = ?` y la versión leída arriba, y no encuentra la
+            // fila si otra escritura se adelantó. Sin open-in-view `current`
+            // está desacoplada y `merge` hace la misma comparación.
+            User saved = repository.save(current);
+            authorityCache.evict(previousUsername);
+            authorityCache.evict(saved.getUsername());
+            result.setOk(saved);
+        } catch (RejectedExecutionException err) {
+            result.setErr(hashingUnavailable());
+        } catch (OptimisticLockingFailureException err) {
+            result.setErr(versionConflict(current.getId()));
         } catch (IllegalArgumentException err) {
             result.setErr(new Error("Error al actualizar el usuario", "Error in UserService.update",
                     ErrorKind.RepositoryError));
-        } finally {
-            result.setOk(user);
         }
 
         return result;
     }
 
+    /**
+     * Activa o desactiva un usuario. Al desactivarlo se dejan de aceptar sus
+     * tokens: el filtro JWT rechaza a los usuarios inactivos, y
+     * `TokenRevocationService.revokeSubject` impide que sus tokens
+     * autocontenidos se acepten sin cargar el usuario.
+     *
+     * @param id El id del usuario.
+     * @return Un `Result` vacío, o el error si el usuario no existe.
+     */
     public Result<Void, Error> delete(Long id) {
         Result<Void, Error> result = new Result<>();
         Optional<User> _user = repository.findById(id);
@@ -126,6 +311,10 @@ public class UserService {
 
         try {
             repository.save(user);
+            authorityCache.evict(user.getUsername());
+            if (!user.isActive()) {
+                tokenRevocationService.revokeSubject(user.getUsername());
+            }
         } catch (IllegalArgumentException err) {
             result.setErr(new Error("Error al eliminar el usuario", "Error in UserService.delete",
                     ErrorKind.RepositoryError));
@@ -134,10 +323,31 @@ public class UserService {
         return result;
     }
 
+    private static Error hashingUnavailable() {
+        return new Error("El servicio está ocupado, intente nuevamente en unos segundos",
+                "Password hashing queue is full", ErrorKind.ServiceUnavailableError);
+    }
+
+    private static Error versionConflict(Long id) {
+        return new Error("El usuario fue modificado por otra persona, vuelva a cargarlo",
+                String.format("Version mismatch for user with id: %d", id), ErrorKind.PreconditionFailedError);
+    }
+
     public Optional<User> findByUsername(String username) {
         return repository.findByUsername(username);
     }
 
+    /**
+     * Busca un usuario con sus roles y permisos cargados en una sola consulta,
+     * listo para construir un `UserFactory`.
+     *
+     * @param username El nombre de usuario.
+     * @return Un `Optional` con el usuario, o vacío si no se encuentra.
+     */
+    public Optional<User> findWithAuthoritiesByUsername(String username) {
+        return repository.findWithAuthoritiesByUsername(username);
+    }
+
     public Optional<User> findByEmail(String email) {
         return repository.findByEmail(email);
     }
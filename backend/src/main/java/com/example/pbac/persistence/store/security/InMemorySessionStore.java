@@ -0,0 +1,268 @@
+package com.example.pbac.persistence.store.security;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.pbac.persistence.model.security.Session;
+import com.example.pbac.persistence.repository.security.SessionRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.service.JwtService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Implementación en memoria de `SessionStore`.
+ *
+ * Las sesiones se reparten en franjas (`stripes`), cada una con su propio
+ * candado, para que las rotaciones concurrentes de tokens distintos no
+ * compitan entre sí. Cada sesión expira junto con su token de acceso y las
+ * expiradas se eliminan periódicamente.
+ *
+ * Con `session.store.write_behind=true` los cambios se encolan y se escriben en
+ * la tabla `session` en segundo plano, y al iniciar se recargan desde ella, de
+ * modo que las sesiones sobreviven a un reinicio. La cola admite
+ * `session.store.queue_capacity` escrituras; si está llena, quien escribe la
+ * vacía él mismo antes de escribir su cambio, de modo que la base de datos
+ * frena a los clientes en lugar de acumular memoria y el orden se conserva.
+ *
+ * Métricas: el gauge `session.store.pending_writes`, con las escrituras en
+ * cola.
+ */
+
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "memory")
+public class InMemorySessionStore implements SessionStore {
+
+    private record Entry(String accessToken, long expiresAt) {
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Entry> sessions = new HashMap<>();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemorySessionStore.class);
+
+    private final SessionRepository repository;
+    private final JwtService jwtService;
+    private final Config config;
+    private final Stripe[] stripes;
+    private final BlockingQueue<Runnable> pendingWrites;
+    // Una sola vaciada a la vez, para escribir en el orden de la cola
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public InMemorySessionStore(SessionRepository repository, JwtService jwtService, Config config,
+            MeterRegistry registry) {
+        this.repository = repository;
+        this.jwtService = jwtService;
+        this.config = config;
+        this.pendingWrites = new LinkedBlockingQueue<>(Math.max(1, config.session_store_queue_capacity));
+        Gauge.builder("session.store.pending_writes", pendingWrites, Queue::size).register(registry);
+        int count = Integer.highestOneBit(Math.max(1, config.session_store_stripes - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public Optional<Session> findById(String refreshToken) {
+        Stripe stripe = stripeFor(refreshToken);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.sessions.get(refreshToken);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.expiresAt() <= System.currentTimeMillis()) {
+                stripe.sessions.remove(refreshToken);
+                return Optional.empty();
+            }
+            Session session = new Session();
+            session.setRefreshToken(refreshToken);
+            session.setAccessToken(entry.accessToken());
+            session.setExpiresAt(Instant.ofEpochMilli(entry.expiresAt()));
+            return Optional.of(session);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void save(Session session) {
+        put(session.getRefreshToken(), session.getAccessToken(), session.getExpiresAt().toEpochMilli());
+        enqueue(() -> repository.insert(session.getRefreshToken(), session.getAccessToken(),
+                session.getExpiresAt()));
+    }
+
+    @Override
+    public Optional<String> rotate(String oldRefreshToken, String newRefreshToken, String accessToken,
+            Instant expiresAt) {
+        Entry entry;
+        Stripe stripe = stripeFor(oldRefreshToken);
+        stripe.lock.lock();
+        try {
+            entry = stripe.sessions.remove(oldRefreshToken);
+            if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+                return Optional.empty();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        // El nuevo token de refresco se acaba de generar, nadie más puede verlo
+        // hasta que esta llamada termine, así que basta con insertarlo
+        put(newRefreshToken, accessToken, expiresAt.toEpochMilli());
+        enqueue(() -> repository.rotate(oldRefreshToken, newRefreshToken, accessToken, expiresAt));
+        return Optional.of(entry.accessToken());
+    }
+
+    @Override
+    public void delete(String refreshToken) {
+        Stripe stripe = stripeFor(refreshToken);
+        stripe.lock.lock();
+        try {
+            stripe.sessions.remove(refreshToken);
+        } finally {
+            stripe.lock.unlock();
+        }
+        enqueue(() -> repository.deleteByRefreshToken(refreshToken));
+    }
+
+    /**
+     * Elimina de memoria las sesiones cuyo token de acceso ya expiró.
+     */
+    @Scheduled(fixedDelayString = "${session.store.eviction_millis:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<Entry> entries = stripe.sessions.values().iterator();
+                while (entries.hasNext()) {
+                    if (entries.next().expiresAt() <= now) {
+                        entries.remove();
+                        evicted++;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted {} expired sessions", evicted);
+        }
+    }
+
+    /**
+     * Escribe en la tabla `session` los cambios pendientes, en el mismo orden en
+     * que ocurrieron.
+     */
+    @Scheduled(fixedDelayString = "${session.store.flush_millis:1000}")
+    @PreDestroy
+    public void flush() {
+        if (!config.session_store_write_behind) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void drain() {
+        Runnable write;
+        while ((write = pendingWrites.poll()) != null) {
+            run(write);
+        }
+    }
+
+    private static void run(Runnable write) {
+        try {
+            write.run();
+        } catch (RuntimeException err) {
+            logger.error("Could not persist session: {}", err.getMessage());
+        }
+    }
+
+    /**
+     * Recarga las sesiones vigentes desde la tabla `session` al iniciar.
+     */
+    @PostConstruct
+    public void reload() {
+        if (!config.session_store_write_behind) {
+            return;
+        }
+        int loaded = 0;
+        for (Session session : repository.findAll()) {
+            if (put(session.getRefreshToken(), session.getAccessToken(), expiresAt(session))) {
+                loaded++;
+            }
+        }
+        logger.info("Reloaded {} sessions into the in-memory session store", loaded);
+    }
+
+    private boolean put(String refreshToken, String accessToken, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return false;
+        }
+        Stripe stripe = stripeFor(refreshToken);
+        stripe.lock.lock();
+        try {
+            stripe.sessions.put(refreshToken, new Entry(accessToken, expiresAt));
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Solo se usa al recargar. Las filas anteriores a la columna `expires_at` no
+     * la tienen, en ese caso se toma la expiración del propio token de acceso.
+     */
+    private long expiresAt(Session session) {
+        if (session.getExpiresAt() != null) {
+            return session.getExpiresAt().toEpochMilli();
+        }
+        JwtService.VerifiedToken token = jwtService.verify(session.getAccessToken());
+        return token.getExpiration() != null ? token.getExpiration().getTime() : 0;
+    }
+
+    private void enqueue(Runnable write) {
+        if (!config.session_store_write_behind || pendingWrites.offer(write)) {
+            return;
+        }
+        // Cola llena: se escriben las pendientes y luego este cambio, en orden
+        flushLock.lock();
+        try {
+            drain();
+            run(write);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private Stripe stripeFor(String refreshToken) {
+        int hash = refreshToken.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
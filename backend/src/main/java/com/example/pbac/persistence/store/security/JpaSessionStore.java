@@ -0,0 +1,45 @@
+package com.example.pbac.persistence.store.security;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.pbac.persistence.model.security.Session;
+import com.example.pbac.persistence.repository.security.SessionRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Implementación de `SessionStore` sobre la tabla `session`. Cada operación es
+ * una única sentencia SQL.
+ */
+
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaSessionStore implements SessionStore {
+    private final SessionRepository repository;
+
+    @Override
+    public Optional<Session> findById(String refreshToken) {
+        return repository.findById(refreshToken);
+    }
+
+    @Override
+    public void save(Session session) {
+        repository.insert(session.getRefreshToken(), session.getAccessToken(), session.getExpiresAt());
+    }
+
+    @Override
+    public Optional<String> rotate(String oldRefreshToken, String newRefreshToken, String accessToken,
+            Instant expiresAt) {
+        return Optional.ofNullable(repository.rotate(oldRefreshToken, newRefreshToken, accessToken, expiresAt));
+    }
+
+    @Override
+    public void delete(String refreshToken) {
+        repository.deleteByRefreshToken(refreshToken);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.pbac.persistence.store.security;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import com.example.pbac.persistence.model.security.Session;
+
+/**
+ * SessionStore abstrae el almacenamiento de las sesiones (token de refresco
+ * -> token de acceso). `SessionService` trabaja únicamente contra esta
+ * interfaz y la implementación se elige con la propiedad `session.store`:
+ *
+ * - `jpa` (por defecto): `JpaSessionStore`, la tabla `session`.
+ * - `memory`: `InMemorySessionStore`, en memoria con persistencia diferida
+ * opcional a la tabla.
+ */
+
+public interface SessionStore {
+    /**
+     * Busca una sesión por su token de refresco.
+     *
+     * @param refreshToken Token de refresco de la sesión.
+     * @return La sesión si existe y no ha expirado, o vacío.
+     */
+    Optional<Session> findById(String refreshToken);
+
+    /**
+     * Guarda una sesión nueva.
+     *
+     * @param session La sesión a guardar.
+     */
+    void save(Session session);
+
+    /**
+     * Rota atómicamente la sesión de `oldRefreshToken` a `newRefreshToken` y le
+     * asigna el nuevo token de acceso, en una sola operación condicional. Si dos
+     * llamadas rotan el mismo token a la vez, solo una obtiene la sesión.
+     *
+     * @param oldRefreshToken Token de refresco actual.
+     * @param newRefreshToken Nuevo token de refresco.
+     * @param accessToken     Nuevo token de acceso.
+     * @param expiresAt       Expiración del nuevo token de acceso.
+     * @return El token de acceso anterior de la sesión, o vacío si
+     *         `oldRefreshToken` no corresponde a ninguna sesión vigente.
+     */
+    Optional<String> rotate(String oldRefreshToken, String newRefreshToken, String accessToken, Instant expiresAt);
+
+    /**
+     * Elimina una sesión.
+     *
+     * @param refreshToken Token de refresco de la sesión.
+     */
+    void delete(String refreshToken);
+}
@@ -13,4 +13,97 @@ public class Config {
 
     @Value("${jwt.expiration_millis}")
     public long expiration_millis;
+
+    @Value("${jwt.self_contained:false}")
+    public boolean self_contained;
+
+    @Value("${jwt.algorithm:HS256}")
+    public String jwt_algorithm;
+
+    @Value("${jwt.key_ring.path:}")
+    public String jwt_key_ring_path;
+
+    @Value("${jwt.key_ring.rotation_millis:2592000000}")
+    public long jwt_key_ring_rotation_millis;
+
+    @Value("${jwt.jwks.max_age_seconds:3600}")
+    public int jwks_max_age_seconds;
+
+    @Value("${jwt.revocation.expected_tokens:100000}")
+    public int revocation_expected_tokens;
+
+    @Value("${jwt.revocation.false_positive_rate:0.001}")
+    public double revocation_false_positive_rate;
+
+    @Value("${auth.cache.max_size:10000}")
+    public int auth_cache_max_size;
+
+    @Value("${auth.cache.ttl_millis:60000}")
+    public long auth_cache_ttl_millis;
+
+    @Value("${session.store.stripes:64}")
+    public int session_store_stripes;
+
+    @Value("${session.store.write_behind:true}")
+    public boolean session_store_write_behind;
+
+    @Value("${session.store.queue_capacity:10000}")
+    public int session_store_queue_capacity;
+
+    @Value("${session.reaper.batch_size:1000}")
+    public int session_reaper_batch_size;
+
+    @Value("${session.reaper.pause_millis:100}")
+    public long session_reaper_pause_millis;
+
+    @Value("${password.hashing.threads:0}")
+    public int password_hashing_threads;
+
+    @Value("${password.hashing.queue_capacity:64}")
+    public int password_hashing_queue_capacity;
+
+    @Value("${password.hashing.retry_after_seconds:1}")
+    public int password_hashing_retry_after_seconds;
+
+    @Value("${login.throttle.enabled:true}")
+    public boolean login_throttle_enabled;
+
+    @Value("${login.throttle.ip.capacity:20}")
+    public int login_throttle_ip_capacity;
+
+    @Value("${login.throttle.ip.refill_per_minute:30}")
+    public int login_throttle_ip_refill_per_minute;
+
+    @Value("${login.throttle.username.capacity:5}")
+    public int login_throttle_username_capacity;
+
+    @Value("${login.throttle.username.refill_per_minute:5}")
+    public int login_throttle_username_refill_per_minute;
+
+    @Value("${login.throttle.stripes:64}")
+    public int login_throttle_stripes;
+
+    @Value("${login.throttle.max_entries:100000}")
+    public int login_throttle_max_entries;
+
+    @Value("${user.page.default_size:50}")
+    public int user_page_default_size;
+
+    @Value("${user.page.max_size:500}")
+    public int user_page_max_size;
+
+    @Value("${user.export.fetch_size:1000}")
+    public int user_export_fetch_size;
+
+    @Value("${user.import.chunk_size:500}")
+    public int user_import_chunk_size;
+
+    @Value("${user.import.threads:0}")
+    public int user_import_threads;
+
+    @Value("${user.import.max_reported_errors:1000}")
+    public int user_import_max_reported_errors;
+
+    @Value("${user.import.retry_after_seconds:60}")
+    public int user_import_retry_after_seconds;
 }
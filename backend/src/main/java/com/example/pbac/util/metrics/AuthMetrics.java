@@ -0,0 +1,164 @@
+package com.example.pbac.util.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.example.pbac.web.security.Error;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * AuthMetrics registra la latencia de cada etapa de la autenticación (filtro
+ * JWT, inicio de sesión, refresco de token) en Micrometer.
+ *
+ * Por cada flujo `<name>` se publican dos timers:
+ *
+ * - `<name>.stage`, con las etiquetas `stage`, `outcome` (`success` o
+ * `failure`) y `error_kind` (el `ErrorKind` del error, o `none`).
+ * - `<name>`, el tiempo total del flujo, con `outcome` y `error_kind`.
+ *
+ * Los histogramas de percentiles se activan con
+ * `management.metrics.distribution.percentiles-histogram.auth`.
+ */
+
+@Component
+public class AuthMetrics {
+    private static final String SUCCESS = "success";
+    private static final String FAILURE = "failure";
+    private static final String NONE = "none";
+
+    /**
+     * Timers de un flujo. Los de éxito se resuelven una vez por etapa y se
+     * reutilizan, de modo que medir una solicitud exitosa no reserva memoria;
+     * los de fallo se buscan en el registro en cada llamada.
+     *
+     * Los tiempos se pasan como `System.nanoTime()` del llamador, para medir sin
+     * un objeto por solicitud (ver `Stages` para un uso más cómodo).
+     */
+    public final class Flow {
+        private final String name;
+        private final String stageName;
+        private final Timer succeeded;
+        private final Map<String, Timer> completed = new ConcurrentHashMap<>();
+
+        private Flow(String name) {
+            this.name = name;
+            this.stageName = name + ".stage";
+            this.succeeded = registry.timer(name, Tags.of("outcome", SUCCESS, "error_kind", NONE));
+        }
+
+        /**
+         * Cierra una etapa como exitosa.
+         *
+         * @param stage      Nombre de la etapa.
+         * @param stageStart Inicio de la etapa.
+         * @return El fin de la etapa, que es el inicio de la siguiente.
+         */
+        public long completed(String stage, long stageStart) {
+            long now = System.nanoTime();
+            Timer timer = completed.get(stage);
+            if (timer == null) {
+                timer = completed.computeIfAbsent(stage, key -> registry.timer(stageName,
+                        Tags.of("stage", key, "outcome", SUCCESS, "error_kind", NONE)));
+            }
+            timer.record(now - stageStart, TimeUnit.NANOSECONDS);
+            return now;
+        }
+
+        /**
+         * Cierra una etapa y el flujo completo como fallidos.
+         *
+         * @param stage      Nombre de la etapa.
+         * @param err        El error, o `null` si no hay uno.
+         * @param start      Inicio del flujo.
+         * @param stageStart Inicio de la etapa.
+         */
+        public void failed(String stage, Error err, long start, long stageStart) {
+            long now = System.nanoTime();
+            String errorKind = err == null || err.getErrorKind() == null ? NONE : err.getErrorKind().name();
+            record(stageName, Tags.of("stage", stage, "outcome", FAILURE, "error_kind", errorKind),
+                    now - stageStart);
+            record(name, Tags.of("outcome", FAILURE, "error_kind", errorKind), now - start);
+        }
+
+        /**
+         * Cierra el flujo completo como exitoso.
+         *
+         * @param start Inicio del flujo.
+         */
+        public void succeeded(long start) {
+            succeeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cronómetro de un flujo. Cada llamada cierra la etapa en curso y empieza la
+     * siguiente; no es seguro entre hilos (uno por solicitud).
+     */
+    public static final class Stages {
+        private final Flow flow;
+        private final long start;
+        private long stageStart;
+
+        private Stages(Flow flow) {
+            this.flow = flow;
+            this.start = System.nanoTime();
+            this.stageStart = start;
+        }
+
+        /**
+         * Cierra la etapa en curso como exitosa.
+         */
+        public void completed(String stage) {
+            stageStart = flow.completed(stage, stageStart);
+        }
+
+        /**
+         * Cierra la etapa en curso y el flujo completo como fallidos.
+         */
+        public void failed(String stage, Error err) {
+            flow.failed(stage, err, start, stageStart);
+        }
+
+        /**
+         * Cierra el flujo completo como exitoso.
+         */
+        public void succeeded() {
+            flow.succeeded(start);
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<String, Flow> flows = new ConcurrentHashMap<>();
+
+    public AuthMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Devuelve los timers de un flujo, creados una sola vez por nombre.
+     *
+     * @param name Prefijo de las métricas, p. ej. `auth.filter`.
+     */
+    public Flow flow(String name) {
+        return flows.computeIfAbsent(name, Flow::new);
+    }
+
+    /**
+     * Empieza a medir un flujo.
+     *
+     * @param name Prefijo de las métricas, p. ej. `auth.login`.
+     */
+    public Stages start(String name) {
+        return new Stages(flow(name));
+    }
+
+    private void record(String name, Tags tags, long nanos) {
+        registry.timer(name, tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
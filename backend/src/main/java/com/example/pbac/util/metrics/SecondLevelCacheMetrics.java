@@ -0,0 +1,78 @@
+package com.example.pbac.util.metrics;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Publica en Micrometer los aciertos y fallos de la caché de segundo nivel de
+ * Hibernate para las regiones de roles y permisos (ver `ehcache.xml`):
+ *
+ * - `hibernate.l2.hits` y `hibernate.l2.misses`, contadores por `region`.
+ * - `hibernate.l2.hit_ratio`, aciertos / (aciertos + fallos), por `region`.
+ *
+ * Solo se activa con `l2_cache.metrics.enabled=true`, que también enciende
+ * `hibernate.generate_statistics`; las estadísticas tienen un costo en cada
+ * sesión, así que están apagadas por defecto.
+ *
+ * Los aciertos reflejan solo los caminos que leen la caché: `findByName` de
+ * roles y permisos (caché de consultas y de entidades) y la carga perezosa de
+ * `Role.permissions` o de un rol por id. `findWithAuthoritiesByUsername`
+ * (login, refresh y el filtro JWT ante un fallo de `AuthoritySnapshotCache`)
+ * trae roles y permisos con un fetch join del grafo de entidades: esas filas
+ * salen de la consulta y solo se escriben en la caché, sin contar aciertos.
+ */
+
+@Component
+@ConditionalOnProperty(name = "l2_cache.metrics.enabled", havingValue = "true")
+public class SecondLevelCacheMetrics {
+    static final List<String> ENTITY_REGIONS = List.of("security.role", "security.permission",
+            "security.role_permissions");
+    static final String QUERY_REGION = "security.by_name";
+
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry registry) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        // Las regiones de consultas se crean con la primera consulta. Si las
+        // estadísticas se piden antes, Hibernate recuerda la región como
+        // inexistente y deja de contarla, por eso se crea aquí
+        sessionFactory.getCache().getQueryResultsCache(QUERY_REGION);
+        Statistics statistics = sessionFactory.getStatistics();
+        for (String region : ENTITY_REGIONS) {
+            register(registry, region, statistics, s -> s.getDomainDataRegionStatistics(region));
+        }
+        register(registry, QUERY_REGION, statistics, s -> s.getQueryRegionStatistics(QUERY_REGION));
+    }
+
+    private static void register(MeterRegistry registry, String region, Statistics statistics,
+            Function<Statistics, CacheRegionStatistics> regionStatistics) {
+        FunctionCounter.builder("hibernate.l2.hits", statistics, s -> hits(regionStatistics.apply(s)))
+                .tag("region", region)
+                .register(registry);
+        FunctionCounter.builder("hibernate.l2.misses", statistics, s -> misses(regionStatistics.apply(s)))
+                .tag("region", region)
+                .register(registry);
+        Gauge.builder("hibernate.l2.hit_ratio", statistics, s -> {
+            CacheRegionStatistics stats = regionStatistics.apply(s);
+            double total = hits(stats) + misses(stats);
+            return total == 0 ? Double.NaN : hits(stats) / total;
+        }).tag("region", region).register(registry);
+    }
+
+    private static double hits(CacheRegionStatistics stats) {
+        return stats == null ? 0 : stats.getHitCount();
+    }
+
+    private static double misses(CacheRegionStatistics stats) {
+        return stats == null ? 0 : stats.getMissCount();
+    }
+}
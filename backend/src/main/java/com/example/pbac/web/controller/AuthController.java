@@ -2,36 +2,44 @@ package com.example.pbac.web.controller;
 
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.pbac.persistence.model.security.Session;
-import com.example.pbac.persistence.model.security.User;
 import com.example.pbac.persistence.service.security.AuthService;
-import com.example.pbac.persistence.service.security.SessionService;
-import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
 import com.example.pbac.web.security.Result;
+import com.example.pbac.web.dto.AuthorizationDecisionsDto;
+import com.example.pbac.web.dto.SessionBootstrapDto;
 import com.example.pbac.web.dto.UserDto;
 import com.example.pbac.web.security.Error;
 import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.model.AuthorizationCheckRequest;
 import com.example.pbac.web.security.model.JwtAuthResponse;
 import com.example.pbac.web.security.model.LoginRequest;
 import com.example.pbac.web.security.model.RefreshTokenRequest;
 import com.example.pbac.web.security.model.UserFactory;
-import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.web.middleware.JwtAuthenticationFilter;
+import com.example.pbac.web.security.service.LoginThrottle;
+import com.example.pbac.web.security.service.JwtService.VerifiedToken;
 
 import lombok.RequiredArgsConstructor;
 
 import java.util.Optional;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/auth")
@@ -39,23 +47,54 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
     private final AuthService authService;
+    private final Config config;
+    private final LoginThrottle loginThrottle;
 
     /**
      * Inicia sesión en el sistema y genera un JWT.
      *
      * @param request Objeto `LoginRequest` con las credenciales de inicio de
      *                sesión.
+     * @param httpRequest La solicitud, para obtener la IP del cliente. Detrás de
+     *                    un proxy, `getRemoteAddr()` es la IP del cliente solo
+     *                    porque `server.forward-headers-strategy=native` la toma
+     *                    de `X-Forwarded-For` cuando la petición llega de un
+     *                    proxy de confianza
+     *                    (`server.tomcat.remoteip.internal-proxies`); sin eso,
+     *                    todos los clientes compartirían la cubeta del proxy.
      * @return Un objeto `Result` con el JWT y la información del usuario
-     *         autenticado, o un error si la operación falla.
+     *         autenticado, o un error si la operación falla. Si el servidor está
+     *         saturado responde 503 con el encabezado `Retry-After`; si el
+     *         usuario o la IP superaron el límite de intentos (ver
+     *         `LoginThrottle`), 429 con `Retry-After`, sin consultar la base de
+     *         datos ni verificar la contraseña.
      */
     @PostMapping("/login")
-    public ResponseEntity<Result<JwtAuthResponse, Error>> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<Result<JwtAuthResponse, Error>> login(@RequestBody LoginRequest request,
+            HttpServletRequest httpRequest) {
+        long retryAfterSeconds = loginThrottle.tryAcquire(request.getUsername(), httpRequest.getRemoteAddr());
+        if (retryAfterSeconds > 0) {
+            Result<JwtAuthResponse, Error> result = new Result<>();
+            result.setErr(new Error("Demasiados intentos de inicio de sesión, intente nuevamente más tarde",
+                    "Login attempts throttled", ErrorKind.TooManyRequestsError));
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(result);
+        }
+
         Result<JwtAuthResponse, Error> result = authService.login(request);
         if (result.getErr() != null) {
+            if (result.getErr().getErrorKind() == ErrorKind.ServiceUnavailableError) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER,
+                                String.valueOf(config.password_hashing_retry_after_seconds))
+                        .body(result);
+            }
             return new ResponseEntity<>(result,
                     result.getErr().getErrorKind() == ErrorKind.RepositoryError ? HttpStatus.BAD_REQUEST
                             : HttpStatus.UNAUTHORIZED);
         }
+        loginThrottle.loginSucceeded(request.getUsername());
         return ResponseEntity.ok(result);
     }
 
@@ -74,6 +113,64 @@ public class AuthController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Verifica en una sola llamada varios roles y permisos del usuario
+     * autenticado, en lugar de una llamada a `/is_authorized` por rol.
+     *
+     * @param principal El usuario autenticado por el filtro JWT.
+     * @param request   Objeto `AuthorizationCheckRequest` con los roles y
+     *                  permisos a verificar.
+     * @return Un objeto `Result` con un mapa de decisiones por rol y por
+     *         permiso, o 401 si la solicitud no trae un token válido.
+     */
+    @PostMapping("/authorizations")
+    public ResponseEntity<Result<AuthorizationDecisionsDto, Error>> authorize(
+            @AuthenticationPrincipal UserFactory principal, @RequestBody AuthorizationCheckRequest request) {
+        if (principal == null) {
+            Result<AuthorizationDecisionsDto, Error> result = new Result<>();
+            result.setErr(new Error("Debe iniciar sesión", "No authenticated user", ErrorKind.AccessDenied));
+            return new ResponseEntity<>(result, HttpStatus.UNAUTHORIZED);
+        }
+        return ResponseEntity.ok(authService.authorize(principal, request));
+    }
+
+    /**
+     * Devuelve en una sola llamada lo que el frontend necesita al iniciar: el
+     * usuario, sus roles y permisos efectivos y la expiración del token.
+     *
+     * La respuesta lleva un ETag fuerte derivado de la versión de autorización
+     * del usuario. Si el cliente envía el mismo valor en `If-None-Match`, se
+     * responde 304 sin cuerpo, sin serializar y sin consultar la base de datos.
+     *
+     * @param principal El usuario autenticado por el filtro JWT.
+     * @param token     El token ya verificado por el filtro JWT.
+     * @param request   La solicitud, para evaluar `If-None-Match`.
+     * @return Un objeto `Result` con el `SessionBootstrapDto`, 304 si no cambió,
+     *         o 401 si la solicitud no trae un token válido.
+     */
+    @GetMapping("/bootstrap")
+    public ResponseEntity<Result<SessionBootstrapDto, Error>> bootstrap(
+            @AuthenticationPrincipal UserFactory principal,
+            @RequestAttribute(name = JwtAuthenticationFilter.VERIFIED_TOKEN_ATTRIBUTE, required = false) VerifiedToken token,
+            WebRequest request) {
+        Optional<UserFactory> snapshot = principal == null || token == null ? Optional.empty()
+                : authService.findBootstrapSnapshot(principal);
+        if (snapshot.isEmpty()) {
+            Result<SessionBootstrapDto, Error> result = new Result<>();
+            result.setErr(new Error("Debe iniciar sesión", "No authenticated user", ErrorKind.AccessDenied));
+            return new ResponseEntity<>(result, HttpStatus.UNAUTHORIZED);
+        }
+
+        String eTag = authService.bootstrapETag(snapshot.get(), token);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(authService.bootstrap(snapshot.get(), token));
+    }
+
     /**
      * Refresca el token JWT de un usuario.
      *
@@ -83,8 +180,6 @@ public class AuthController {
      */
     @PostMapping("/refresh_token")
     public ResponseEntity<Result<JwtAuthResponse, Error>> refreshToken(@RequestBody RefreshTokenRequest request) {
-        logger.info(String.format("RefreshToken: %s", request.getRefreshToken()));
-
         Result<JwtAuthResponse, Error> result = authService.refreshToken(request);
         if (result.getErr() != null) {
             return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
@@ -92,6 +187,30 @@ public class AuthController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Cierra la sesión: revoca el token de acceso presentado, que deja de ser
+     * válido antes de su expiración.
+     *
+     * La revocación es inmediata en la instancia que atiende el logout. Las
+     * demás instancias la incorporan en la siguiente reconstrucción de su
+     * filtro de revocación, así que durante hasta `jwt.revocation.rebuild_millis`
+     * (5 minutos por defecto) pueden seguir aceptando el token. La sesión, en
+     * cambio, deja de poder refrescarse en todas de inmediato, porque el refresco
+     * consulta la tabla ante cualquier positivo del filtro y la rotación ocurre
+     * en la base de datos.
+     *
+     * @param accessToken El token de autenticación del encabezado.
+     * @return Un objeto `Result` con `true`, o un error si el token no es válido.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Result<Boolean, Error>> logout(@RequestHeader("Authorization") String accessToken) {
+        Result<Boolean, Error> result = authService.logout(accessToken);
+        if (result.getErr() != null) {
+            return new ResponseEntity<>(result, HttpStatus.UNAUTHORIZED);
+        }
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Obtiene los datos del usuario a partir del token JWT.
      *
@@ -0,0 +1,39 @@
+package com.example.pbac.web.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.service.JwtKeyRing;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+    private final JwtKeyRing keyRing;
+    private final Config config;
+
+    /**
+     * Publica las claves públicas con las que se verifican los tokens de acceso
+     * (JWKS, RFC 7517), para que otros servicios los validen localmente.
+     *
+     * La respuesta se puede cachear `jwt.jwks.max_age_seconds`; una clave nueva
+     * se publica con esa antelación antes de empezar a firmar. Con
+     * `jwt.algorithm=HS256` la lista de claves está vacía.
+     *
+     * @return El documento JWKS ya serializado.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<byte[]> jwks() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.maxAge(config.jwks_max_age_seconds, TimeUnit.SECONDS).cachePublic())
+                .body(keyRing.jwks());
+    }
+}
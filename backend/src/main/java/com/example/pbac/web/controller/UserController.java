@@ -1,23 +1,36 @@
 package com.example.pbac.web.controller;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.service.security.UserExportService;
+import com.example.pbac.persistence.service.security.UserImportService;
 import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
 import com.example.pbac.web.security.Result;
 
 import jakarta.websocket.server.PathParam;
 
 import com.example.pbac.web.dto.NewUserDto;
+import com.example.pbac.web.dto.UserImportReportDto;
+import com.example.pbac.web.dto.UserPageDto;
 import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -25,12 +38,16 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 @RestController
 @RequestMapping("/user")
 @RequiredArgsConstructor
 public class UserController {
     private final UserService service;
+    private final UserExportService exportService;
+    private final UserImportService importService;
+    private final Config config;
 
     @PreAuthorize("hasAuthority('user_findAll')")
     @GetMapping("/findAll")
@@ -41,16 +58,77 @@ public class UserController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Lista usuarios por páginas con paginación por clave. Para obtener la
+     * página siguiente se envía como `after` el valor `next` de la respuesta.
+     *
+     * @param size      Tamaño de página (opcional).
+     * @param after     Cursor de la página anterior (opcional).
+     * @param sort      `id` o `username` (opcional, por defecto `id`).
+     * @param direction `asc` o `desc` (opcional, por defecto `asc`).
+     * @return Un objeto `Result` con la página de usuarios.
+     */
+    @PreAuthorize("hasAuthority('user_findAll')")
+    @GetMapping("/page")
+    public ResponseEntity<Result<UserPageDto, Error>> findPage(
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "direction", required = false) String direction) {
+        Result<UserPageDto, Error> result = service.findPage(sort, direction, after, size);
+
+        if (result.isErr()) {
+            return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Exporta los usuarios como NDJSON (un objeto JSON por línea), leyendo y
+     * escribiendo fila por fila. Pensado para sincronizaciones masivas.
+     *
+     * @param active Filtra por estado (opcional).
+     * @param role   Filtra por nombre de rol (opcional).
+     * @return El flujo NDJSON de usuarios.
+     */
+    @PreAuthorize("hasAuthority('user_findAll')")
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(name = "active", required = false) Boolean active,
+            @RequestParam(name = "role", required = false) String role) {
+        StreamingResponseBody body = out -> exportService.export(active, role, out);
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /**
+     * Devuelve un usuario con su versión como ETag. Si el cliente envía
+     * `If-None-Match`, primero se lee solo la versión: si coincide se responde
+     * 304 sin cargar la entidad ni serializarla.
+     *
+     * @param id      El id del usuario.
+     * @param request La solicitud, para evaluar `If-None-Match`.
+     * @return Un objeto `Result` con el usuario, 304 si no cambió, o 404 si no
+     *         existe.
+     */
     @PreAuthorize("hasAuthority('user_findById')")
     @GetMapping("/{id}")
-    public ResponseEntity<Result<User, Error>> findById(@PathVariable("id") Long id) {
+    public ResponseEntity<Result<User, Error>> findById(@PathVariable("id") Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = service.findVersion(id);
+            if (version.isPresent() && request.checkNotModified(eTag(version.get()))) {
+                return null;
+            }
+        }
+
         Result<User, Error> result = service.findById(id);
 
         if (result.isErr()) {
             return new ResponseEntity<>(result, HttpStatus.NOT_FOUND);
         }
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok().eTag(eTag(result.getOk().getVersion())).body(result);
     }
 
     @PreAuthorize("hasAuthority('user_create')")
@@ -59,22 +137,83 @@ public class UserController {
         Result<User, Error> result = service.create(newUser);
 
         if (result.isErr()) {
+            if (result.getErr().getErrorKind() == ErrorKind.ServiceUnavailableError) {
+                return serviceUnavailable(result, config.password_hashing_retry_after_seconds);
+            }
             return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
         }
 
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Importa usuarios en bloque desde CSV (con encabezado) o NDJSON. Las filas
+     * con error se reportan sin detener la importación.
+     *
+     * La columna `roles` solo se acepta si quien importa tiene además
+     * `user_assignRole`; sin ella, solo se puede asignar el rol predeterminado.
+     *
+     * @param contentType    `text/csv` o `application/x-ndjson`.
+     * @param body           Contenido del archivo.
+     * @param authentication Usuario que importa.
+     * @return Un objeto `Result` con el reporte de la importación.
+     */
+    @PreAuthorize("hasAuthority('user_create')")
+    @PostMapping(value = "/import", consumes = { UserImportService.CSV, UserImportService.NDJSON })
+    public ResponseEntity<Result<UserImportReportDto, Error>> importUsers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body,
+            Authentication authentication) {
+        boolean canAssignRoles = authentication.getAuthorities().stream()
+                .anyMatch(authority -> UserImportService.ROLE_ASSIGNMENT_AUTHORITY.equals(authority.getAuthority()));
+        Result<UserImportReportDto, Error> result = importService.importUsers(body, contentType, canAssignRoles);
+
+        if (result.isErr()) {
+            if (result.getErr().getErrorKind() == ErrorKind.ServiceUnavailableError) {
+                return serviceUnavailable(result, config.user_import_retry_after_seconds);
+            }
+            return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Actualiza un usuario. Con `If-Match` (el ETag leído de `/user/{id}`) la
+     * actualización solo se aplica si nadie modificó al usuario desde entonces;
+     * si no, se responde 412 sin escribir ni codificar la contraseña.
+     *
+     * @param user    Los nuevos datos del usuario.
+     * @param ifMatch El ETag esperado, `*` o ausente para no comprobarlo.
+     * @return Un objeto `Result` con el usuario actualizado y su nuevo ETag.
+     */
     @PreAuthorize("hasAuthority('user_update')")
     @PutMapping("/update")
-    public ResponseEntity<Result<User, Error>> update(@RequestBody User user) {
-        Result<User, Error> result = service.update(user);
+    public ResponseEntity<Result<User, Error>> update(@RequestBody User user,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = parseETag(ifMatch);
+            if (expectedVersion == null) {
+                Result<User, Error> result = new Result<>();
+                result.setErr(new Error("La versión indicada no es válida", "Malformed If-Match header",
+                        ErrorKind.PreconditionFailedError));
+                return new ResponseEntity<>(result, HttpStatus.PRECONDITION_FAILED);
+            }
+        }
+
+        Result<User, Error> result = service.update(user, expectedVersion);
 
         if (result.isErr()) {
+            if (result.getErr().getErrorKind() == ErrorKind.ServiceUnavailableError) {
+                return serviceUnavailable(result, config.password_hashing_retry_after_seconds);
+            }
+            if (result.getErr().getErrorKind() == ErrorKind.PreconditionFailedError) {
+                return new ResponseEntity<>(result, HttpStatus.PRECONDITION_FAILED);
+            }
             return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
         }
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok().eTag(eTag(result.getOk().getVersion())).body(result);
     }
 
     @PreAuthorize("hasAuthority('user_delete')")
@@ -89,4 +228,29 @@ public class UserController {
         return ResponseEntity.ok(result);
     }
 
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @param eTag Un ETag fuerte con la versión, p. ej. `"3"`.
+     * @return La versión, o `null` si el valor no tiene ese formato.
+     */
+    private static Long parseETag(String eTag) {
+        String value = eTag.trim();
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException err) {
+            return null;
+        }
+    }
+
+    private <T> ResponseEntity<T> serviceUnavailable(T body, int retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(body);
+    }
 }
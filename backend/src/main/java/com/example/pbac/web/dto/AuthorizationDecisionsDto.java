@@ -0,0 +1,17 @@
+package com.example.pbac.web.dto;
+
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * AuthorizationDecisionsDto es la respuesta de una verificación de
+ * autorización por lotes: cada rol y cada permiso solicitado, con `true` si el
+ * usuario lo tiene.
+ */
+
+@Value
+public class AuthorizationDecisionsDto {
+    Map<String, Boolean> roles;
+    Map<String, Boolean> permissions;
+}
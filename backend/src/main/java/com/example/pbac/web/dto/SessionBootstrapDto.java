@@ -0,0 +1,19 @@
+package com.example.pbac.web.dto;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * SessionBootstrapDto reúne lo que el frontend necesita al iniciar: los datos
+ * del usuario, sus roles (sin el prefijo `ROLE_`) y permisos efectivos, y la
+ * expiración del token de acceso en milisegundos desde epoch.
+ */
+
+@Value
+public class SessionBootstrapDto {
+    UserDto user;
+    List<String> roles;
+    List<String> permissions;
+    long expiresAt;
+}
@@ -0,0 +1,27 @@
+package com.example.pbac.web.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * UserImportReportDto resume una importación masiva: cuántas filas se leyeron,
+ * cuántas se importaron y el detalle de las que fallaron (hasta
+ * `user.import.max_reported_errors`; `failed` cuenta todas).
+ */
+
+@Data
+public class UserImportReportDto {
+    private long total;
+    private long imported;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    public static class RowError {
+        private final long line;
+        private final String username;
+        private final String message;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.pbac.web.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * UserImportRowDto es una fila de la importación masiva de usuarios, leída de
+ * una línea CSV o NDJSON. `roles` son nombres de rol existentes.
+ */
+
+@Data
+public class UserImportRowDto {
+    private String username;
+    private String email;
+    private String password;
+    private String firstname;
+    private String lastname;
+    private String address;
+    private Integer number;
+    private String profileImage;
+    private List<String> roles;
+}
@@ -0,0 +1,17 @@
+package com.example.pbac.web.dto;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * UserPageDto es una página del listado de usuarios con paginación por clave
+ * (keyset). `next` es el valor que debe enviarse como `after` para obtener la
+ * página siguiente, o `null` si no hay más usuarios.
+ */
+
+@Value
+public class UserPageDto {
+    List<UserSummaryDto> items;
+    String next;
+}
@@ -0,0 +1,19 @@
+package com.example.pbac.web.dto;
+
+import lombok.Value;
+
+/**
+ * UserSummaryDto es la proyección de un usuario que se usa en los listados.
+ * Se lee directamente de la tabla `users` (sin roles, permisos ni contraseña),
+ * de modo que su tamaño no depende de las autorizaciones del usuario.
+ */
+
+@Value
+public class UserSummaryDto {
+    Long id;
+    String username;
+    String email;
+    String firstname;
+    String lastname;
+    boolean active;
+}
@@ -19,5 +19,9 @@ public enum ErrorKind {
     ExpiredTokenError,
     InvalidTokenError,
     TokenNotFoundError,
-    AccessDenied
+    AccessDenied,
+    ServiceUnavailableError,
+    RevokedTokenError,
+    PreconditionFailedError,
+    TooManyRequestsError
 }
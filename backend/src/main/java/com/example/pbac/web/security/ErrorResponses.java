@@ -0,0 +1,115 @@
+package com.example.pbac.web.security;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ErrorResponses escribe respuestas de error fuera de los controladores (filtro
+ * JWT, manejador de acceso denegado), donde no interviene Jackson.
+ *
+ * Los errores fijos (token expirado, token inválido, etc.) se serializan una
+ * sola vez al cargar la clase y se escriben como bytes, de modo que rechazar
+ * una avalancha de tokens no serializa nada por solicitud. El resto se escribe
+ * directamente al flujo de la respuesta con el `Gson` compartido de `Result`.
+ *
+ * Las constantes se comparten entre solicitudes, así que son inmutables: sus
+ * setters lanzan `UnsupportedOperationException`, y sus bytes precalculados no
+ * pueden quedar desfasados.
+ */
+
+public final class ErrorResponses {
+
+    /**
+     * `Error` de solo lectura para las constantes de esta clase.
+     */
+    private static final class FixedError extends Error {
+        private FixedError(String message, String cause, ErrorKind errorKind) {
+            super(message, cause, errorKind);
+        }
+
+        @Override
+        public void setMessage(String message) {
+            throw immutable();
+        }
+
+        @Override
+        public void setCause(String cause) {
+            throw immutable();
+        }
+
+        @Override
+        public void setErrorKind(ErrorKind errorKind) {
+            throw immutable();
+        }
+
+        private UnsupportedOperationException immutable() {
+            return new UnsupportedOperationException("ErrorResponses constants are shared and cannot be modified");
+        }
+    }
+
+    public static final Error EXPIRED_TOKEN = new FixedError("La sesión ha expirado", "JWT has expired",
+            ErrorKind.ExpiredTokenError);
+    public static final Error INVALID_TOKEN = new FixedError("El token no es válido", "Invalid JWT",
+            ErrorKind.InvalidTokenError);
+    public static final Error NO_USERNAME_IN_TOKEN = new FixedError("El usuario no existe", "JWT has no subject",
+            ErrorKind.NoUsernameInTokenError);
+    public static final Error REVOKED_TOKEN = new FixedError("La sesión fue cerrada", "JWT has been revoked",
+            ErrorKind.RevokedTokenError);
+    public static final Error DISABLED_USER = new FixedError("El usuario no esta activo", "User is not active",
+            ErrorKind.ServiceError);
+    public static final Error ACCESS_DENIED = new FixedError(
+            "No tiene los permisos necesarios para realizar esa acción.",
+            "Access Denied: User does not have the required permissions to access this resource.",
+            ErrorKind.AccessDenied);
+
+    private static final Map<Error, byte[]> PRE_ENCODED = preEncode(EXPIRED_TOKEN, INVALID_TOKEN,
+            NO_USERNAME_IN_TOKEN, REVOKED_TOKEN, DISABLED_USER, ACCESS_DENIED);
+
+    private ErrorResponses() {
+    }
+
+    private static Map<Error, byte[]> preEncode(Error... errors) {
+        Map<Error, byte[]> encoded = new IdentityHashMap<>();
+        for (Error err : errors) {
+            encoded.put(err, Result.ofErr(err).toJson().getBytes(StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableMap(encoded);
+    }
+
+    /**
+     * Escribe `{"ok": null, "err": ...}` con el estado indicado.
+     *
+     * @param response Respuesta HTTP.
+     * @param status   Estado HTTP de la respuesta.
+     * @param err      Error a escribir; si es una de las constantes de esta
+     *                 clase se escriben sus bytes precalculados.
+     * @throws IOException Si ocurre un error de E/S al escribir.
+     */
+    public static void write(HttpServletResponse response, HttpStatus status, Error err) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        byte[] body = PRE_ENCODED.get(err);
+        if (body != null) {
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            response.flushBuffer();
+            return;
+        }
+
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        Result.ofErr(err).writeJson(writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.pbac.web.security;
+
+import com.example.pbac.web.security.expression.PermissionExpressionHandler;
+import com.example.pbac.web.security.expression.TimedAuthorizationManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.authorization.method.AuthorizationManagerAfterMethodInterceptor;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.authorization.method.PostAuthorizeAuthorizationManager;
+import org.springframework.security.authorization.method.PostFilterAuthorizationMethodInterceptor;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.authorization.method.PreFilterAuthorizationMethodInterceptor;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+
+/**
+ * MethodSecurityConfig registra la seguridad de métodos en lugar de
+ * `prePostEnabled`: los interceptores de `@PreAuthorize`, `@PostAuthorize`,
+ * `@PreFilter` y `@PostFilter` son los mismos que crea Spring Security, con
+ * `PermissionExpressionHandler`, y las decisiones de `@PreAuthorize` se miden
+ * en `auth.method_security`.
+ *
+ * Todos los beans son estáticos e infraestructura: se crean antes que los
+ * `BeanPostProcessor` que los usan, sin cargar esta configuración.
+ */
+
+@Configuration
+@EnableMethodSecurity(prePostEnabled = false)
+public class MethodSecurityConfig {
+
+    /**
+     * Registra el manejador de expresiones que resuelve `hasAuthority` y
+     * `hasRole` con los permisos compilados del usuario. Con el contexto de la
+     * aplicación, las expresiones pueden referirse a beans (`@bean`).
+     *
+     * @param context El contexto de la aplicación.
+     * @return El manejador de expresiones de seguridad de métodos.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(ApplicationContext context) {
+        PermissionExpressionHandler handler = new PermissionExpressionHandler();
+        handler.setApplicationContext(context);
+        return handler;
+    }
+
+    /**
+     * Registra el interceptor de `@PreAuthorize`, con el mismo manejador de
+     * expresiones, para medir cada decisión en `auth.method_security`.
+     *
+     * @param expressionHandler El manejador de expresiones de seguridad de
+     *                          métodos.
+     * @param registry          El registro de métricas, resuelto al decidir.
+     * @return El interceptor de `@PreAuthorize`.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor timedPreAuthorizeMethodInterceptor(MethodSecurityExpressionHandler expressionHandler,
+            ObjectProvider<MeterRegistry> registry) {
+        PreAuthorizeAuthorizationManager manager = new PreAuthorizeAuthorizationManager();
+        manager.setExpressionHandler(expressionHandler);
+        return AuthorizationManagerBeforeMethodInterceptor.preAuthorize(
+                new TimedAuthorizationManager(manager, registry));
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postAuthorizeMethodInterceptor(MethodSecurityExpressionHandler expressionHandler) {
+        PostAuthorizeAuthorizationManager manager = new PostAuthorizeAuthorizationManager();
+        manager.setExpressionHandler(expressionHandler);
+        return AuthorizationManagerAfterMethodInterceptor.postAuthorize(manager);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preFilterMethodInterceptor(MethodSecurityExpressionHandler expressionHandler) {
+        PreFilterAuthorizationMethodInterceptor interceptor = new PreFilterAuthorizationMethodInterceptor();
+        interceptor.setExpressionHandler(expressionHandler);
+        return interceptor;
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postFilterMethodInterceptor(MethodSecurityExpressionHandler expressionHandler) {
+        PostFilterAuthorizationMethodInterceptor interceptor = new PostFilterAuthorizationMethodInterceptor();
+        interceptor.setExpressionHandler(expressionHandler);
+        return interceptor;
+    }
+}
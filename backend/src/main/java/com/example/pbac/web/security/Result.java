@@ -1,5 +1,7 @@
 package com.example.pbac.web.security;
 
+import java.io.Writer;
+
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -16,6 +18,9 @@ import lombok.Data;
  * los valores válidos como los errores en un solo objeto para ser usados en el
  * Controller.
  *
+ * Fuera de los controladores se serializa con un único `Gson` compacto,
+ * configurado una sola vez y seguro entre hilos.
+ *
  * @param <Ok>  Tipo de valor de éxito, que representa el resultado positivo de
  *              la operación.
  * @param <Err> Tipo de valor de error, que representa el error ocurrido durante
@@ -24,6 +29,8 @@ import lombok.Data;
 
 @Data
 public class Result<Ok, Err> {
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+
     @Nullable
     private Ok ok;
     @Nullable
@@ -37,10 +44,21 @@ public class Result<Ok, Err> {
         return err != null;
     }
 
+    public static <Ok, Err> Result<Ok, Err> ofErr(Err err) {
+        Result<Ok, Err> result = new Result<>();
+        result.setErr(err);
+        return result;
+    }
+
     public String toJson() {
-        GsonBuilder builder = new GsonBuilder();
-        builder.serializeNulls();
-        Gson gson = builder.setPrettyPrinting().create();
-        return gson.toJson(this);
+        return GSON.toJson(this);
+    }
+
+    /**
+     * Serializa el resultado directamente en `writer`, sin construir el JSON
+     * completo como `String`.
+     */
+    public void writeJson(Writer writer) {
+        GSON.toJson(this, writer);
     }
 }
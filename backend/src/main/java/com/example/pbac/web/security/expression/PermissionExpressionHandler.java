@@ -0,0 +1,29 @@
+package com.example.pbac.web.security.expression;
+
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Manejador de expresiones de seguridad de métodos que sustituye la raíz de
+ * evaluación por `PermissionSecurityExpressionRoot`, para que las
+ * verificaciones de autoridades usen el `BitSet` compilado del usuario.
+ */
+
+public class PermissionExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+        StandardEvaluationContext context = (StandardEvaluationContext) super.createEvaluationContext(authentication,
+                mi);
+        MethodSecurityExpressionOperations root = (MethodSecurityExpressionOperations) context.getRootObject()
+                .getValue();
+        context.setRootObject(new PermissionSecurityExpressionRoot(root));
+        return context;
+    }
+}
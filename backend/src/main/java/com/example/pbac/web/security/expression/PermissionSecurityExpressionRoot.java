@@ -0,0 +1,152 @@
+package com.example.pbac.web.security.expression;
+
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import com.example.pbac.web.security.model.UserFactory;
+
+/**
+ * Raíz de las expresiones de `@PreAuthorize` que resuelve `hasAuthority`,
+ * `hasAnyAuthority`, `hasRole` y `hasAnyRole` con el `BitSet` compilado de
+ * `UserFactory`, sin recorrer ni copiar la colección de autoridades.
+ *
+ * Si el principal no es un `UserFactory`, o para cualquier otra expresión, se
+ * delega en la raíz por defecto de Spring Security.
+ */
+
+public class PermissionSecurityExpressionRoot implements MethodSecurityExpressionOperations {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final MethodSecurityExpressionOperations delegate;
+
+    public PermissionSecurityExpressionRoot(MethodSecurityExpressionOperations delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean hasAuthority(String authority) {
+        UserFactory user = userFactory();
+        return user != null ? user.hasAuthority(authority) : delegate.hasAuthority(authority);
+    }
+
+    @Override
+    public boolean hasAnyAuthority(String... authorities) {
+        UserFactory user = userFactory();
+        if (user == null) {
+            return delegate.hasAnyAuthority(authorities);
+        }
+        for (String authority : authorities) {
+            if (user.hasAuthority(authority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasRole(String role) {
+        UserFactory user = userFactory();
+        return user != null ? user.hasAuthority(withRolePrefix(role)) : delegate.hasRole(role);
+    }
+
+    @Override
+    public boolean hasAnyRole(String... roles) {
+        UserFactory user = userFactory();
+        if (user == null) {
+            return delegate.hasAnyRole(roles);
+        }
+        for (String role : roles) {
+            if (user.hasAuthority(withRolePrefix(role))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private UserFactory userFactory() {
+        Authentication authentication = delegate.getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserFactory user) {
+            return user;
+        }
+        return null;
+    }
+
+    private static String withRolePrefix(String role) {
+        return role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role;
+    }
+
+    public Object getPrincipal() {
+        Authentication authentication = delegate.getAuthentication();
+        return authentication != null ? authentication.getPrincipal() : null;
+    }
+
+    @Override
+    public Authentication getAuthentication() {
+        return delegate.getAuthentication();
+    }
+
+    @Override
+    public boolean permitAll() {
+        return delegate.permitAll();
+    }
+
+    @Override
+    public boolean denyAll() {
+        return delegate.denyAll();
+    }
+
+    @Override
+    public boolean isAnonymous() {
+        return delegate.isAnonymous();
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return delegate.isAuthenticated();
+    }
+
+    @Override
+    public boolean isRememberMe() {
+        return delegate.isRememberMe();
+    }
+
+    @Override
+    public boolean isFullyAuthenticated() {
+        return delegate.isFullyAuthenticated();
+    }
+
+    @Override
+    public boolean hasPermission(Object target, Object permission) {
+        return delegate.hasPermission(target, permission);
+    }
+
+    @Override
+    public boolean hasPermission(Object targetId, String targetType, Object permission) {
+        return delegate.hasPermission(targetId, targetType, permission);
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+        delegate.setFilterObject(filterObject);
+    }
+
+    @Override
+    public Object getFilterObject() {
+        return delegate.getFilterObject();
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+        delegate.setReturnObject(returnObject);
+    }
+
+    @Override
+    public Object getReturnObject() {
+        return delegate.getReturnObject();
+    }
+
+    @Override
+    public Object getThis() {
+        return delegate.getThis();
+    }
+}
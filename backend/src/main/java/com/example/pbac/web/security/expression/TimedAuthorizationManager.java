@@ -0,0 +1,112 @@
+package com.example.pbac.web.security.expression;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.MethodAuthorizationDeniedHandler;
+import org.springframework.security.core.Authentication;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Envuelve el `AuthorizationManager` de `@PreAuthorize` para medir cuánto
+ * tarda cada decisión en `auth.method_security`, con las etiquetas `method`
+ * (`Clase.metodo`) y `outcome` (`granted`, `denied`, `abstain` o `error`).
+ * `abstain` es una decisión nula: el método no tiene `@PreAuthorize` y la
+ * invocación continúa sin que se haya autorizado nada.
+ *
+ * Los timers de cada método se resuelven una vez, como en `AuthMetrics.Flow`,
+ * así que medir una decisión no construye etiquetas ni consulta el registro.
+ * El `MeterRegistry` se obtiene de forma perezosa porque el interceptor de
+ * seguridad de métodos se crea antes que el resto de beans.
+ */
+
+public class TimedAuthorizationManager
+        implements AuthorizationManager<MethodInvocation>, MethodAuthorizationDeniedHandler {
+
+    /**
+     * Timers de un método, uno por resultado.
+     */
+    private static final class Timers {
+        private final Timer granted;
+        private final Timer denied;
+        private final Timer abstain;
+        private final Timer error;
+
+        private Timers(MeterRegistry registry, Method method) {
+            String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            this.granted = timer(registry, name, "granted");
+            this.denied = timer(registry, name, "denied");
+            this.abstain = timer(registry, name, "abstain");
+            this.error = timer(registry, name, "error");
+        }
+
+        private static Timer timer(MeterRegistry registry, String method, String outcome) {
+            return Timer.builder("auth.method_security")
+                    .tags(Tags.of("method", method, "outcome", outcome))
+                    .register(registry);
+        }
+    }
+
+    private final AuthorizationManager<MethodInvocation> delegate;
+    private final MethodAuthorizationDeniedHandler deniedHandler;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final Map<Method, Timers> timers = new ConcurrentHashMap<>();
+
+    public <T extends AuthorizationManager<MethodInvocation> & MethodAuthorizationDeniedHandler> TimedAuthorizationManager(
+            T delegate, ObjectProvider<MeterRegistry> registry) {
+        this.delegate = delegate;
+        this.deniedHandler = delegate;
+        this.registry = registry;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        long start = System.nanoTime();
+        AuthorizationDecision decision = null;
+        boolean failed = true;
+        try {
+            decision = delegate.check(authentication, invocation);
+            failed = false;
+            return decision;
+        } finally {
+            Timers methodTimers = timersFor(invocation.getMethod());
+            if (methodTimers != null) {
+                Timer timer = failed ? methodTimers.error
+                        : decision == null ? methodTimers.abstain
+                                : decision.isGranted() ? methodTimers.granted : methodTimers.denied;
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public Object handleDeniedInvocation(MethodInvocation invocation, AuthorizationResult result) {
+        return deniedHandler.handleDeniedInvocation(invocation, result);
+    }
+
+    /**
+     * @return Los timers del método, o `null` si todavía no hay registro.
+     */
+    private Timers timersFor(Method method) {
+        Timers methodTimers = timers.get(method);
+        if (methodTimers == null) {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            if (meterRegistry == null) {
+                return null;
+            }
+            methodTimers = timers.computeIfAbsent(method, key -> new Timers(meterRegistry, key));
+        }
+        return methodTimers;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.pbac.web.security.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * AuthorizationCheckRequest contiene los roles (sin el prefijo `ROLE_`) y los
+ * permisos que el cliente quiere verificar para el usuario autenticado en una
+ * sola solicitud.
+ */
+
+@Data
+public class AuthorizationCheckRequest {
+    private List<String> roles;
+    private List<String> permissions;
+}
@@ -1,35 +1,210 @@
 package com.example.pbac.web.security.model;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
 
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.web.security.service.PermissionCatalog;
 import com.example.pbac.persistence.model.security.Permission;
 import com.example.pbac.persistence.model.security.Role;
 
+/**
+ * UserFactory es la instantánea inmutable de un usuario y sus autoridades
+ * (roles y permisos). Al ser inmutable puede compartirse entre solicitudes
+ * desde la caché de autoridades.
+ *
+ * Además de la lista de `GrantedAuthority` que requiere Spring Security,
+ * guarda las autoridades compiladas como un `BitSet` sobre el
+ * `PermissionCatalog`, para que `hasAuthority` sea una prueba de bit.
+ */
+
 public class UserFactory implements UserDetails {
 
-    private String username;
-    private String password;
-    private boolean enabled;
-    private Collection<GrantedAuthority> authorities;
+    private final String username;
+    private final String password;
+    private final boolean enabled;
+    private final Collection<GrantedAuthority> authorities;
+    private final PermissionCatalog.Snapshot catalog;
+    private final BitSet permissions;
+    private final List<Integer> roleIds;
+    /** Datos de perfil; nulos en una instantánea reconstruida desde el token. */
+    private final Long id;
+    private final String email;
+    private final String firstname;
+    private final String lastname;
+
+    private volatile String authorizationVersion;
 
     public UserFactory(User user) {
+        this(user, PermissionCatalog.Snapshot.EMPTY);
+    }
+
+    public UserFactory(User user, PermissionCatalog.Snapshot catalog) {
         this.username = user.getUsername();
         this.password = user.getPassword();
         this.enabled = user.isActive();
-        this.authorities = new ArrayList<>();
+        this.id = user.getId();
+        this.email = user.getEmail();
+        this.firstname = user.getFirstname();
+        this.lastname = user.getLastname();
+        this.catalog = catalog;
+        this.permissions = new BitSet(catalog.size());
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        List<Integer> roleIds = new ArrayList<>();
         for (Role role : user.getRoles()) {
-            authorities.add(new SimpleGrantedAuthority(String.format("ROLE_%s", role.getName())));
+            roleIds.add(role.getId());
+            addAuthority(authorities, String.format("ROLE_%s", role.getName()));
             for (Permission permission : role.getPermissions()) {
-                authorities
-                        .add(new SimpleGrantedAuthority(permission.getName()));
+                addAuthority(authorities, permission.getName());
             }
         }
+        this.authorities = Collections.unmodifiableList(authorities);
+        this.roleIds = Collections.unmodifiableList(roleIds);
+    }
+
+    /**
+     * Reconstruye la instantánea a partir de las claims de un token
+     * autocontenido, sin consultar la base de datos. El token debe haber sido
+     * emitido con el mismo catálogo (`catalog.getVersion()`).
+     *
+     * @param username    Usuario (subject) del token.
+     * @param roleIds     Ids de los roles del usuario.
+     * @param permissions Autoridades codificadas con `encodePermissions()`.
+     * @param catalog     Catálogo con el que se codificaron las autoridades.
+     */
+    public UserFactory(String username, List<Integer> roleIds, String permissions,
+            PermissionCatalog.Snapshot catalog) {
+        this.username = username;
+        this.password = null;
+        this.enabled = true;
+        this.id = null;
+        this.email = null;
+        this.firstname = null;
+        this.lastname = null;
+        this.catalog = catalog;
+        this.permissions = BitSet.valueOf(Base64.getUrlDecoder().decode(permissions));
+        List<GrantedAuthority> authorities = new ArrayList<>(this.permissions.cardinality());
+        for (int i = this.permissions.nextSetBit(0); i >= 0 && i < catalog.size(); i = this.permissions
+                .nextSetBit(i + 1)) {
+            authorities.add(new SimpleGrantedAuthority(catalog.nameOf(i)));
+        }
+        this.authorities = Collections.unmodifiableList(authorities);
+        this.roleIds = roleIds == null ? List.of() : List.copyOf(roleIds);
+    }
+
+    private void addAuthority(List<GrantedAuthority> authorities, String authority) {
+        authorities.add(new SimpleGrantedAuthority(authority));
+        int index = catalog.indexOf(authority);
+        if (index >= 0) {
+            permissions.set(index);
+        }
+    }
+
+    /**
+     * Indica si el usuario tiene la autoridad dada. Las autoridades del
+     * catálogo se resuelven con una prueba de bit; el resto (por ejemplo,
+     * permisos creados después de compilar el catálogo) se buscan en la lista.
+     *
+     * @param authority Nombre del permiso o `ROLE_<rol>`.
+     * @return `true` si el usuario tiene la autoridad.
+     */
+    public boolean hasAuthority(String authority) {
+        int index = catalog.indexOf(authority);
+        if (index >= 0) {
+            return permissions.get(index);
+        }
+        for (GrantedAuthority granted : authorities) {
+            if (authority.equals(granted.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Las autoridades compiladas, codificadas en Base64 URL, para
+     *         incluirlas como claim en un token autocontenido.
+     */
+    public String encodePermissions() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(permissions.toByteArray());
+    }
+
+    /**
+     * Huella de la identidad y las autoridades efectivas del usuario (perfil,
+     * versión del catálogo y autoridades ordenadas). Cambia si cambia cualquiera
+     * de ellas, por lo que sirve como ETag fuerte. Se calcula una sola vez por
+     * instantánea.
+     *
+     * @return Los primeros 16 bytes del SHA-256, en hexadecimal.
+     */
+    public String getAuthorizationVersion() {
+        String version = authorizationVersion;
+        if (version == null) {
+            StringBuilder source = new StringBuilder()
+                    .append(id).append('\n').append(username).append('\n').append(email).append('\n')
+                    .append(firstname).append('\n').append(lastname).append('\n').append(enabled).append('\n')
+                    .append(catalog.getVersion());
+            for (String authority : getAuthorityNames()) {
+                source.append('\n').append(authority);
+            }
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256")
+                        .digest(source.toString().getBytes(StandardCharsets.UTF_8));
+                version = HexFormat.of().formatHex(digest, 0, 16);
+            } catch (NoSuchAlgorithmException err) {
+                throw new IllegalStateException(err);
+            }
+            authorizationVersion = version;
+        }
+        return version;
+    }
+
+    /**
+     * @return Los nombres de las autoridades, sin repetir y en orden.
+     */
+    public TreeSet<String> getAuthorityNames() {
+        TreeSet<String> names = new TreeSet<>();
+        for (GrantedAuthority authority : authorities) {
+            names.add(authority.getAuthority());
+        }
+        return names;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public String getEmail() {
+        return this.email;
+    }
+
+    public String getFirstname() {
+        return this.firstname;
+    }
+
+    public String getLastname() {
+        return this.lastname;
+    }
+
+    public PermissionCatalog.Snapshot getCatalog() {
+        return this.catalog;
+    }
+
+    public List<Integer> getRoleIds() {
+        return this.roleIds;
     }
 
     @Override
@@ -0,0 +1,153 @@
+package com.example.pbac.web.security.service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.model.UserFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * AuthoritySnapshotCache mantiene en memoria las instantáneas inmutables
+ * (`UserFactory`) de los usuarios autenticados, indexadas por nombre de
+ * usuario, para no consultar la base de datos en cada solicitud.
+ *
+ * La caché está acotada por tamaño y cada entrada expira después del TTL
+ * configurado. Las lecturas no bloquean; la limpieza solo ocurre al insertar
+ * cuando la caché está llena. `UserService` invalida explícitamente las
+ * entradas cuando un usuario se crea, actualiza o elimina, y
+ * `AuthorizationChangeListener` las vacía cuando cambian los roles o permisos.
+ *
+ * Una carga que empezó antes de una invalidación no guarda su resultado: cada
+ * clave tiene una generación (en franjas, como las cubetas de `LoginThrottle`)
+ * que `evict` y `clear` incrementan, y la carga solo conserva su entrada si la
+ * generación no cambió mientras leía la base de datos.
+ *
+ * Métricas: `auth.cache.gets`, por `result` (`hit` o `miss`), y el gauge
+ * `auth.cache.size`.
+ */
+
+@Component
+public class AuthoritySnapshotCache {
+
+    private record Entry(UserFactory snapshot, long expiresAt) {
+    }
+
+    private static final int GENERATION_SLOTS = 1024;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_SLOTS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    public AuthoritySnapshotCache(Config config, MeterRegistry registry) {
+        this.maxSize = config.auth_cache_max_size;
+        this.ttlNanos = config.auth_cache_ttl_millis * 1_000_000L;
+        FunctionCounter.builder("auth.cache.gets", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("auth.cache.gets", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        Gauge.builder("auth.cache.size", entries, Map::size).register(registry);
+    }
+
+    /**
+     * Devuelve la instantánea del usuario, cargándola con `loader` si no está en
+     * caché o si ya expiró.
+     *
+     * @param username Nombre de usuario a buscar.
+     * @param loader   Función que construye la instantánea desde la base de datos.
+     * @return La instantánea del usuario.
+     */
+    public UserFactory get(String username, Function<String, UserFactory> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt() - now > 0) {
+            hits.increment();
+            return entry.snapshot();
+        }
+
+        misses.increment();
+        int slot = slot(username);
+        long generation = generations.get(slot);
+        UserFactory snapshot = loader.apply(username);
+        if (maxSize > 0) {
+            if (entries.size() >= maxSize) {
+                evict(now);
+            }
+            Entry loaded = new Entry(snapshot, now + ttlNanos);
+            entries.put(username, loaded);
+            // `evict` incrementa la generación antes de borrar: si cambió, la
+            // carga pudo leer datos anteriores a la invalidación y se descarta
+            if (generations.get(slot) != generation) {
+                entries.remove(username, loaded);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Invalida la instantánea de un usuario.
+     *
+     * @param username Nombre de usuario cuya entrada debe eliminarse.
+     */
+    public void evict(String username) {
+        if (username != null) {
+            generations.incrementAndGet(slot(username));
+            entries.remove(username);
+        }
+    }
+
+    /**
+     * Invalida todas las instantáneas.
+     */
+    public void clear() {
+        for (int i = 0; i < GENERATION_SLOTS; i++) {
+            generations.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static int slot(String username) {
+        int hash = username.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_SLOTS - 1);
+    }
+
+    /**
+     * Elimina las entradas expiradas y, si la caché sigue llena, las que expiran
+     * antes hasta dejar un 10% de espacio libre.
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        int excess = entries.size() - (maxSize - Math.max(1, maxSize / 10));
+        if (excess <= 0) {
+            return;
+        }
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+}
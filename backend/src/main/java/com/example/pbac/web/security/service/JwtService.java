@@ -3,27 +3,40 @@ package com.example.pbac.web.security.service;
 import com.example.pbac.util.config.Config;
 import com.example.pbac.web.security.Error;
 import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.ErrorResponses;
+import com.example.pbac.web.security.model.UserFactory;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
 import lombok.Data;
+import lombok.Value;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.Date;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.function.Function;
+
+import javax.crypto.Mac;
 
 /**
  * JwtService gestiona la generación, validación y extracción de información de
@@ -36,19 +49,6 @@ import java.util.function.Function;
 @Service
 public class JwtService {
 
-    /**
-     * Encapsula las claims (declaraciones) extraídas de un token JWT y un posible
-     * error.
-     * Su funcion es para representar el resultado de la extracción de claims de un
-     * token,
-     * con un posible error.
-     */
-    @Data
-    public class ClaimsWrapper {
-        private Claims claims;
-        private Error err;
-    }
-
     /**
      * Envuelve un claim específico (de tipo genérico T) extraído de un token, junto
      * con un
@@ -85,108 +85,262 @@ public class JwtService {
         private Error err;
     }
 
+    /**
+     * Resultado inmutable de verificar un token JWT una sola vez.
+     * Contiene el usuario (subject), la fecha de expiración y el error, si lo
+     * hubo. Las claims de un token expirado se conservan para que el llamador
+     * pueda identificar al usuario igualmente.
+     */
+    @Value
+    public static class VerifiedToken {
+        String subject;
+        Date expiration;
+        Error err;
+        /** Identificador del token (`jti`), usado para revocarlo. */
+        String jti;
+        /** Claims de un token autocontenido; nulas en un token normal. */
+        List<Integer> roleIds;
+        String permissions;
+        String catalogVersion;
+
+        public VerifiedToken(String subject, Date expiration, Error err) {
+            this(subject, expiration, err, null, null, null, null);
+        }
+
+        public VerifiedToken(String subject, Date expiration, Error err, String jti, List<Integer> roleIds,
+                String permissions, String catalogVersion) {
+            this.subject = subject;
+            this.expiration = expiration;
+            this.err = err;
+            this.jti = jti;
+            this.roleIds = roleIds;
+            this.permissions = permissions;
+            this.catalogVersion = catalogVersion;
+        }
+
+        public boolean isValid() {
+            return err == null;
+        }
+
+        public boolean isExpired() {
+            return err != null && err.getErrorKind() == ErrorKind.ExpiredTokenError;
+        }
+
+        public boolean isSelfContained() {
+            return permissions != null && catalogVersion != null;
+        }
+    }
+
+    public static final String ROLE_IDS_CLAIM = "rid";
+    public static final String PERMISSIONS_CLAIM = "perm";
+    public static final String CATALOG_VERSION_CLAIM = "pcv";
+
+    private static final char REFRESH_TOKEN_SEPARATOR = '.';
+    // Longitud por defecto de `session.refresh_token` (varchar(255))
+    private static final int REFRESH_TOKEN_MAX_LENGTH = 255;
+    private static final Base64.Encoder REFRESH_TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder REFRESH_TOKEN_DECODER = Base64.getUrlDecoder();
+    private static final String REFRESH_TOKEN_MAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] REFRESH_TOKEN_MAC_PREFIX = "refresh.".getBytes(StandardCharsets.UTF_8);
+
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
 
-    @Autowired
-    private Config config;
+    private final Config config;
+    private final Key signingKey;
+    private final JwtKeyRing keyRing;
+    private final JwtParser parser;
+
+    /**
+     * La clave de firma y el parser se construyen una sola vez, ambos son
+     * inmutables y seguros para usarse desde varios hilos.
+     *
+     * El parser elige la clave por el encabezado del token: los tokens con `kid`
+     * se verifican con la clave pública correspondiente del anillo, y los que no
+     * lo tienen (HS256) con la clave secreta.
+     *
+     * @param config  Configuración con la clave secreta y la expiración.
+     * @param keyRing Anillo de claves EC, activo con `jwt.algorithm=ES256`.
+     */
+    public JwtService(Config config, JwtKeyRing keyRing) {
+        this.config = config;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(config.secret_key));
+        this.keyRing = keyRing;
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                String kid = header.getKeyId();
+                if (kid == null) {
+                    return signingKey;
+                }
+                Key key = keyRing.verificationKey(kid);
+                if (key == null) {
+                    throw new SignatureException("Unknown signing key " + kid);
+                }
+                return key;
+            }
+        }).build();
+    }
 
     /**
      * Genera un token JWT de acceso para un usuario dado.
      *
+     * Si `jwt.self_contained` está activo y el usuario es un `UserFactory`
+     * compilado con el catálogo de permisos, el token incluye los ids de sus
+     * roles, sus autoridades codificadas y la versión del catálogo.
+     *
+     * Cada token lleva un `jti` único para poder revocarlo.
+     *
+     * Con `jwt.algorithm=ES256` se firma con la clave vigente del anillo y su
+     * `kid` va en el encabezado; si no, con HS256 y la clave secreta.
+     *
      * @param userDetails Detalles del usuario, incluido su nombre de usuario.
      * @return Token JWT generado.
      */
     public String generateAccessToken(UserDetails userDetails) {
-        String token = Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + config.expiration_millis))
-                .signWith(getSiginKey(), SignatureAlgorithm.HS256)
-                .compact();
-        logger.info("Generated JWT: {}", token);
+                .setExpiration(new Date(System.currentTimeMillis() + config.expiration_millis));
+        if (config.self_contained && userDetails instanceof UserFactory user && user.getCatalog().size() > 0) {
+            builder.claim(ROLE_IDS_CLAIM, user.getRoleIds())
+                    .claim(PERMISSIONS_CLAIM, user.encodePermissions())
+                    .claim(CATALOG_VERSION_CLAIM, user.getCatalog().getVersion());
+        }
+        if (keyRing.isEnabled()) {
+            JwtKeyRing.SigningKey key = keyRing.signingKey();
+            builder.setHeaderParam(JwsHeader.KEY_ID, key.kid())
+                    .signWith(key.privateKey(), SignatureAlgorithm.ES256);
+        } else {
+            builder.signWith(signingKey, SignatureAlgorithm.HS256);
+        }
+        String token = builder.compact();
+        logger.debug("Generated JWT for {}", userDetails.getUsername());
         return token;
     }
 
     /**
-     * Genera un token de actualización único.
+     * Genera un token de actualización único: un UUID, el nombre de usuario en
+     * Base64 URL y un HMAC-SHA256 de ambos con la clave secreta
+     * (`<uuid>.<usuario>.<mac>`). El usuario permite emitir el nuevo token de
+     * acceso antes de rotar la sesión, y el HMAC impide fabricar tokens que
+     * provoquen esa consulta y esa firma para cualquier usuario.
      *
-     * @return Token de actualización generado como un UUID.
+     * Si el resultado no cabe en la columna `session.refresh_token` se devuelve
+     * solo el UUID, como los tokens emitidos antes de este formato.
+     *
+     * @param username El usuario de la sesión.
+     * @return Token de actualización generado.
      */
-    public String generateRefreshToken() {
-        String refreshToken = UUID.randomUUID().toString();
-        logger.info("Generated Refresh Token: {}", refreshToken);
-        return refreshToken;
+    public String generateRefreshToken(String username) {
+        String uuid = UUID.randomUUID().toString();
+        String payload = uuid + REFRESH_TOKEN_SEPARATOR
+                + REFRESH_TOKEN_ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+        String token = payload + REFRESH_TOKEN_SEPARATOR
+                + REFRESH_TOKEN_ENCODER.encodeToString(refreshTokenMac(payload));
+        return token.length() <= REFRESH_TOKEN_MAX_LENGTH ? token : uuid;
     }
 
     /**
-     * Extrae el nombre de usuario del token JWT.
-     *
-     * @param token Token JWT del cual extraer el nombre de usuario.
-     * @return Un `ClaimWrapper` que contiene el nombre de usuario o un error si
-     *         ocurre algún problema.
+     * @param refreshToken Token de actualización presentado por el cliente.
+     * @return Si el token incluye al usuario; si no, tiene el formato anterior
+     *         (solo el UUID) y el usuario sale de la sesión.
      */
-    public ClaimWrapper<String> extractUsername(String token) {
-        logger.info("Extracting username from token: {}", token);
-        ClaimWrapper<String> wrapper = extractClaim(token, Claims::getSubject);
-        return wrapper;
+    public boolean hasRefreshTokenSubject(String refreshToken) {
+        return refreshToken.indexOf(REFRESH_TOKEN_SEPARATOR) >= 0;
     }
 
     /**
-     * Extrae un *claim* específico del token JWT utilizando una función de
-     * resolución.
-     *
-     * @param <T>            Tipo del *claim* a extraer.
-     * @param token          Token JWT del cual extraer el *claim*.
-     * @param claimsResolver Función para resolver el *claim* deseado.
-     * @return Un `ClaimWrapper` que contiene el *claim* extraído o un error si
-     *         ocurre algún problema.
+     * @param refreshToken Token de actualización presentado por el cliente.
+     * @return El usuario incluido en el token, o vacío si el token no tiene el
+     *         formato `<uuid>.<usuario>.<mac>` o su HMAC no coincide.
      */
-    private <T> ClaimWrapper<T> extractClaim(String token, Function<Claims, T> claimsResolver) {
-        var result = extractAllClaims(token);
-        Claims claims = result.getClaims();
-        if (result.getErr() != null) {
-            ClaimWrapper<T> wrapper = new ClaimWrapper<T>();
-            wrapper.setClaim(claimsResolver.apply(claims));
-            wrapper.setErr(result.getErr());
-            return wrapper;
-        } else {
-            ClaimWrapper<T> wrapper = new ClaimWrapper<T>();
-            wrapper.setClaim(claimsResolver.apply(claims));
-            return wrapper;
+    public Optional<String> refreshTokenSubject(String refreshToken) {
+        int mac = refreshToken.lastIndexOf(REFRESH_TOKEN_SEPARATOR);
+        int subject = refreshToken.indexOf(REFRESH_TOKEN_SEPARATOR);
+        if (subject < 0 || mac == subject || refreshToken.length() > REFRESH_TOKEN_MAX_LENGTH) {
+            return Optional.empty();
+        }
+        String payload = refreshToken.substring(0, mac);
+        try {
+            // Comparación en tiempo constante, para no revelar cuánto del HMAC acierta
+            if (!MessageDigest.isEqual(refreshTokenMac(payload),
+                    REFRESH_TOKEN_DECODER.decode(refreshToken.substring(mac + 1)))) {
+                return Optional.empty();
+            }
+            return Optional.of(new String(REFRESH_TOKEN_DECODER.decode(payload.substring(subject + 1)),
+                    StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException err) {
+            return Optional.empty();
         }
     }
 
     /**
-     * Obtiene la clave de firma utilizada para firmar y validar tokens JWT.
-     *
-     * @return Clave criptográfica derivada de la clave secreta configurada.
+     * El prefijo separa estos HMAC de las firmas HS256 de los tokens de acceso,
+     * que usan la misma clave: un token de acceso no pasa por uno de
+     * actualización.
      */
-    private Key getSiginKey() {
-        byte[] key = Decoders.BASE64.decode(config.secret_key);
-        return Keys.hmacShaKeyFor(key);
+    private byte[] refreshTokenMac(String payload) {
+        try {
+            Mac mac = Mac.getInstance(REFRESH_TOKEN_MAC_ALGORITHM);
+            mac.init(signingKey);
+            mac.update(REFRESH_TOKEN_MAC_PREFIX);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException err) {
+            throw new IllegalStateException(err);
+        }
     }
 
     /**
-     * Extrae todas las declaraciones (*claims*) de un token JWT.
+     * Verifica la firma del token y extrae sus claims en una sola pasada.
      *
-     * @param token Token JWT del cual extraer las declaraciones.
-     * @return Un `ClaimsWrapper` con las declaraciones extraídas o un error si
-     *         ocurre algún problema.
+     * Es el único punto donde se parsea un token; el resto de métodos de este
+     * servicio se apoyan en él.
+     *
+     * @param token Token JWT a verificar.
+     * @return Un `VerifiedToken` con el usuario y la expiración, o con el error
+     *         correspondiente si el token expiró, no tiene usuario o no es válido.
      */
-    private ClaimsWrapper extractAllClaims(String token) {
-        ClaimsWrapper wrapper = new ClaimsWrapper();
+    public VerifiedToken verify(String token) {
         try {
-            Claims claims = Jwts.parserBuilder().setSigningKey(getSiginKey()).build().parseClaimsJws(token).getBody();
-            wrapper.setClaims(claims);
-            return wrapper;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            String subject = claims.getSubject();
+            if (subject == null || subject.isEmpty()) {
+                return new VerifiedToken(subject, claims.getExpiration(), ErrorResponses.NO_USERNAME_IN_TOKEN);
+            }
+            return new VerifiedToken(subject, claims.getExpiration(), null, claims.getId(), roleIds(claims),
+                    claims.get(PERMISSIONS_CLAIM, String.class), claims.get(CATALOG_VERSION_CLAIM, String.class));
         } catch (ExpiredJwtException err) {
-            wrapper.setClaims(err.getClaims());
-            wrapper.setErr(new Error("La sesión ha expirado", String.format("JWT has expired -> %s", err.getMessage()),
-                    ErrorKind.ExpiredTokenError));
-            return wrapper;
+            logger.debug("JWT has expired -> {}", err.getMessage());
+            return new VerifiedToken(err.getClaims().getSubject(), err.getClaims().getExpiration(),
+                    ErrorResponses.EXPIRED_TOKEN);
+        } catch (JwtException | IllegalArgumentException err) {
+            logger.debug("Invalid JWT -> {}", err.getMessage());
+            return new VerifiedToken(null, null, ErrorResponses.INVALID_TOKEN);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private static List<Integer> roleIds(Claims claims) {
+        Object roleIds = claims.get(ROLE_IDS_CLAIM);
+        return roleIds instanceof List ? (List<Integer>) roleIds : null;
+    }
+
+    /**
+     * Extrae el nombre de usuario del token JWT.
+     *
+     * @param token Token JWT del cual extraer el nombre de usuario.
+     * @return Un `ClaimWrapper` que contiene el nombre de usuario o un error si
+     *         ocurre algún problema.
+     */
+    public ClaimWrapper<String> extractUsername(String token) {
+        VerifiedToken verified = verify(token);
+        ClaimWrapper<String> wrapper = new ClaimWrapper<String>();
+        wrapper.setClaim(verified.getSubject());
+        wrapper.setErr(verified.getErr());
+        return wrapper;
+    }
+
     /**
      * Valida si un token JWT es válido para un usuario específico.
      *
@@ -195,23 +349,47 @@ public class JwtService {
      * @return Un `ValidationWrapper` indicando si el token es válido o no.
      */
     public ValidationWrapper isTokenValid(String token, UserDetails userDetails) {
-        ClaimWrapper<String> username = extractUsername(token);
-        if (username.getClaim().isEmpty()) {
-            ValidationWrapper wrapper = new ValidationWrapper();
-            wrapper.setValid(false);
-            wrapper.setErr(
-                    new Error("El usuario no existe", username.getErr().getMessage(),
-                            ErrorKind.NoUsernameInTokenError));
-            return wrapper;
-        }
+        return isTokenValid(verify(token), userDetails);
+    }
 
-        logger.info("Extracted username: {}", username);
-        boolean usernameIsValid = username.getClaim().equals(userDetails.getUsername());
+    /**
+     * Valida un token ya verificado contra un usuario específico, sin volver a
+     * parsearlo ni a comprobar su firma.
+     *
+     * @param token       Token previamente verificado con `verify`.
+     * @param userDetails Detalles del usuario a validar contra el token.
+     * @return Un `ValidationWrapper` indicando si el token es válido o no.
+     */
+    public ValidationWrapper isTokenValid(VerifiedToken token, UserDetails userDetails) {
         ValidationWrapper wrapper = new ValidationWrapper();
-        wrapper.setValid(usernameIsValid);
+        wrapper.setErr(validate(token, userDetails));
+        wrapper.setValid(wrapper.getErr() == null);
         return wrapper;
     }
 
+    /**
+     * Igual que `isTokenValid`, sin reservar un `ValidationWrapper`; es la
+     * variante que usa el filtro JWT en cada solicitud.
+     *
+     * @param token       Token previamente verificado con `verify`.
+     * @param userDetails Detalles del usuario a validar contra el token.
+     * @return `null` si el token corresponde a un usuario activo, o el error
+     *         fijo de `ErrorResponses` que lo impide. Un token expirado conserva
+     *         su usuario, pero nunca es válido.
+     */
+    public Error validate(VerifiedToken token, UserDetails userDetails) {
+        if (token.getErr() != null) {
+            return token.getErr();
+        }
+        if (token.getSubject() == null || token.getSubject().isEmpty()) {
+            return ErrorResponses.NO_USERNAME_IN_TOKEN;
+        }
+        if (!userDetails.isEnabled()) {
+            return ErrorResponses.DISABLED_USER;
+        }
+        return token.getSubject().equals(userDetails.getUsername()) ? null : ErrorResponses.INVALID_TOKEN;
+    }
+
     /**
      * Verifica si un token JWT ha expirado.
      *
@@ -219,10 +397,10 @@ public class JwtService {
      * @return Un `ExpiredWrapper` indicando si el token está expirado.
      */
     public ExpiredWrapper isTokenExpired(String token) {
-        ClaimWrapper<Date> wrapper = extractClaim(token, Claims::getExpiration);
+        VerifiedToken verified = verify(token);
         ExpiredWrapper expiredWrapper = new ExpiredWrapper();
-        expiredWrapper.setExpired(wrapper.getClaim().before(new Date()));
-        expiredWrapper.setErr(wrapper.getErr());
+        expiredWrapper.setExpired(verified.isExpired());
+        expiredWrapper.setErr(verified.getErr());
         return expiredWrapper;
     }
 }
@@ -0,0 +1,290 @@
+package com.example.pbac.web.security.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.pbac.util.config.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * LoginThrottle limita los intentos de inicio de sesión con cubetas de tokens
+ * (token buckets) por dirección IP y por nombre de usuario. Se consulta antes
+ * de buscar al usuario en la base de datos y de verificar la contraseña, de
+ * modo que un intento rechazado no cuesta una verificación de BCrypt.
+ *
+ * Cada intento consume un token de la cubeta de su IP y otro de la de su
+ * usuario; las cubetas se recargan de forma continua hasta su capacidad. La IP
+ * frena a un cliente que prueba muchos usuarios, y el usuario a muchos clientes
+ * que prueban la misma cuenta.
+ *
+ * Las cubetas se reparten en franjas con su propio candado, como en
+ * `InMemorySessionStore`. Cada franja guarda a lo sumo
+ * `login.throttle.max_entries / stripes` cubetas. Una cubeta que se recargó por
+ * completo equivale a una nueva, así que cada `login.throttle.eviction_millis`
+ * se eliminan sin perder estado; con la franja llena, una clave nueva reemplaza
+ * a la cubeta llena usada hace más tiempo, y si no hay ninguna se rechaza. Nunca
+ * se descarta una cubeta con tokens consumidos: si no, un atacante podría
+ * vaciarla con claves nuevas y recuperar los intentos de una cuenta.
+ *
+ * Un inicio de sesión correcto devuelve el token de su usuario
+ * (`loginSucceeded`), de modo que el límite por usuario solo cuenta fallos.
+ *
+ * Métricas: `auth.login.throttled`, por `key` (`ip` o `username`), y el gauge
+ * `auth.login.throttle.buckets`.
+ */
+
+@Component
+public class LoginThrottle {
+
+    /**
+     * Cubeta de tokens con recarga continua. Solo se accede con el candado de su
+     * franja.
+     */
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        // En orden de acceso, para descartar la cubeta usada hace más tiempo
+        private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Cubetas de un tipo de clave (IP o usuario), con su capacidad y su ritmo de
+     * recarga.
+     */
+    private static final class Buckets {
+        private final int capacity;
+        private final double nanosPerToken;
+        private final int maxPerStripe;
+        private final Stripe[] stripes;
+        private final Counter throttled;
+
+        private Buckets(String key, int capacity, int refillPerMinute, Config config, MeterRegistry registry) {
+            this.capacity = Math.max(1, capacity);
+            this.nanosPerToken = (double) TimeUnit.MINUTES.toNanos(1) / Math.max(1, refillPerMinute);
+            int count = Integer.highestOneBit(Math.max(1, config.login_throttle_stripes - 1)) << 1;
+            this.maxPerStripe = Math.max(1, config.login_throttle_max_entries / count);
+            this.stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe();
+            }
+            this.throttled = Counter.builder("auth.login.throttled").tag("key", key).register(registry);
+        }
+
+        /**
+         * @return 0 si se consumió un token, o los nanosegundos que faltan para
+         *         el siguiente.
+         */
+        private long tryConsume(String id, long now) {
+            Stripe stripe = stripeFor(id);
+            stripe.lock.lock();
+            try {
+                Bucket bucket = stripe.buckets.get(id);
+                if (bucket == null) {
+                    if (stripe.buckets.size() >= maxPerStripe) {
+                        long wait = evictRefilled(stripe, now);
+                        if (wait > 0) {
+                            throttled.increment();
+                            return wait;
+                        }
+                    }
+                    bucket = new Bucket(capacity, now);
+                    stripe.buckets.put(id, bucket);
+                } else {
+                    refill(bucket, now);
+                }
+
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+                throttled.increment();
+                return Math.max(1, (long) Math.ceil((1 - bucket.tokens) * nanosPerToken));
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        /**
+         * Descarta de una franja llena la cubeta recargada por completo usada
+         * hace más tiempo.
+         *
+         * @return 0 si se descartó una cubeta, o los nanosegundos que faltan para
+         *         que se recargue la primera.
+         */
+        private long evictRefilled(Stripe stripe, long now) {
+            long wait = Long.MAX_VALUE;
+            Iterator<Bucket> buckets = stripe.buckets.values().iterator();
+            while (buckets.hasNext()) {
+                long missing = nanosUntilFull(buckets.next(), now);
+                if (missing == 0) {
+                    buckets.remove();
+                    return 0;
+                }
+                wait = Math.min(wait, missing);
+            }
+            return wait;
+        }
+
+        /**
+         * Devuelve un token consumido: el de un intento que otra cubeta rechazó,
+         * o el de un inicio de sesión correcto.
+         */
+        private void refund(String id, long now) {
+            Stripe stripe = stripeFor(id);
+            stripe.lock.lock();
+            try {
+                Bucket bucket = stripe.buckets.get(id);
+                if (bucket != null) {
+                    refill(bucket, now);
+                    bucket.tokens = Math.min(capacity, bucket.tokens + 1);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        private int evictIdle(long now) {
+            int evicted = 0;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    Iterator<Bucket> buckets = stripe.buckets.values().iterator();
+                    while (buckets.hasNext()) {
+                        if (nanosUntilFull(buckets.next(), now) == 0) {
+                            buckets.remove();
+                            evicted++;
+                        }
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return evicted;
+        }
+
+        private int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    size += stripe.buckets.size();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return size;
+        }
+
+        private long nanosUntilFull(Bucket bucket, long now) {
+            double missing = capacity - bucket.tokens - (now - bucket.refilledAt) / nanosPerToken;
+            return missing <= 0 ? 0 : Math.max(1, (long) Math.ceil(missing * nanosPerToken));
+        }
+
+        private void refill(Bucket bucket, long now) {
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) / nanosPerToken);
+            bucket.refilledAt = now;
+        }
+
+        private Stripe stripeFor(String id) {
+            int hash = id.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThrottle.class);
+
+    private final Config config;
+    private final Buckets byAddress;
+    private final Buckets byUsername;
+
+    public LoginThrottle(Config config, MeterRegistry registry) {
+        this.config = config;
+        this.byAddress = new Buckets("ip", config.login_throttle_ip_capacity,
+                config.login_throttle_ip_refill_per_minute, config, registry);
+        this.byUsername = new Buckets("username", config.login_throttle_username_capacity,
+                config.login_throttle_username_refill_per_minute, config, registry);
+        Gauge.builder("auth.login.throttle.buckets", this, throttle -> throttle.size()).register(registry);
+    }
+
+    /**
+     * Registra un intento de inicio de sesión. Si alguna de sus cubetas está
+     * vacía el intento se rechaza, sin consumir de la otra.
+     *
+     * @param username      El nombre de usuario del intento.
+     * @param clientAddress La dirección IP del cliente.
+     * @return 0 si el intento puede continuar, o los segundos que el cliente
+     *         debe esperar (para `Retry-After`).
+     */
+    public long tryAcquire(String username, String clientAddress) {
+        return tryAcquire(username, clientAddress, System.nanoTime());
+    }
+
+    long tryAcquire(String username, String clientAddress, long now) {
+        if (!config.login_throttle_enabled) {
+            return 0;
+        }
+        String address = clientAddress == null ? "" : clientAddress;
+
+        long wait = byAddress.tryConsume(address, now);
+        if (wait == 0) {
+            wait = byUsername.tryConsume(username == null ? "" : username, now);
+            if (wait == 0) {
+                return 0;
+            }
+            byAddress.refund(address, now);
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Devuelve el token que consumió un inicio de sesión correcto en la cubeta
+     * de su usuario. El de la IP se conserva, porque sigue limitando a un
+     * cliente que prueba muchas cuentas.
+     *
+     * @param username El nombre de usuario autenticado.
+     */
+    public void loginSucceeded(String username) {
+        loginSucceeded(username, System.nanoTime());
+    }
+
+    void loginSucceeded(String username, long now) {
+        if (config.login_throttle_enabled) {
+            byUsername.refund(username == null ? "" : username, now);
+        }
+    }
+
+    /**
+     * Elimina las cubetas que ya se recargaron por completo.
+     */
+    @Scheduled(fixedDelayString = "${login.throttle.eviction_millis:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int evicted = byAddress.evictIdle(now) + byUsername.evictIdle(now);
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle login throttle buckets", evicted);
+        }
+    }
+
+    private int size() {
+        return byAddress.size() + byUsername.size();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.pbac.web.security.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * PasswordHashingService ejecuta BCrypt (codificar y verificar contraseñas) en
+ * un grupo de hilos dedicado y acotado, en lugar de hacerlo en los hilos de
+ * Tomcat. Así una ráfaga de inicios de sesión no deja sin hilos al resto de
+ * endpoints.
+ *
+ * El grupo tiene `password.hashing.threads` hilos (por defecto, uno por
+ * núcleo) y una cola de `password.hashing.queue_capacity` tareas. Si la cola
+ * está llena, la tarea se rechaza de inmediato con una
+ * `RejectedExecutionException`, que los controladores traducen a un 503 con
+ * `Retry-After`.
+ *
+ * Los hilos del grupo son de plataforma incluso en el modo de hilos virtuales:
+ * BCrypt es trabajo de CPU y el límite del grupo es el control de admisión.
+ * La solicitud que espera el resultado sí puede ser un hilo virtual.
+ *
+ * Métricas: `password.hashing` (latencia por operación),
+ * `password.hashing.queue` (tareas en cola) y `password.hashing.rejected`.
+ */
+
+@Service
+public class PasswordHashingService {
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHashingService(PasswordEncoderProvider passwordEncoderProvider, Config config,
+            MeterRegistry registry) {
+        this.encoder = passwordEncoderProvider.passwordEncoder();
+        int threads = config.password_hashing_threads > 0 ? config.password_hashing_threads
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.password_hashing_queue_capacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("password.hashing").tag("operation", "encode").register(registry);
+        this.matchesTimer = Timer.builder("password.hashing").tag("operation", "matches").register(registry);
+        this.rejected = Counter.builder("password.hashing.rejected").register(registry);
+        Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size()).register(registry);
+    }
+
+    /**
+     * Codifica una contraseña con BCrypt en el grupo de hashing.
+     *
+     * @param rawPassword La contraseña en texto plano.
+     * @return La contraseña codificada.
+     * @throws RejectedExecutionException Si la cola del grupo está llena.
+     */
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer.wrap((Callable<String>) () -> encoder.encode(rawPassword)));
+    }
+
+    /**
+     * Verifica una contraseña contra su hash en el grupo de hashing.
+     *
+     * @param rawPassword     La contraseña en texto plano.
+     * @param encodedPassword El hash almacenado.
+     * @return `true` si la contraseña corresponde al hash.
+     * @throws RejectedExecutionException Si la cola del grupo está llena.
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer.wrap((Callable<Boolean>) () -> encoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Permite rechazar una solicitud antes de hacer cualquier otro trabajo (por
+     * ejemplo, consultar la base de datos) cuando la cola ya está llena.
+     *
+     * @return `true` si la cola no admite más tareas.
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException err) {
+            rejected.increment();
+            throw err;
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException err) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", err);
+        } catch (ExecutionException err) {
+            if (err.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(err.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
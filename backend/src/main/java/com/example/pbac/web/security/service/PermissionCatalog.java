@@ -0,0 +1,195 @@
+package com.example.pbac.web.security.service;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * PermissionCatalog compila la tabla de permisos (y los roles, como
+ * `ROLE_<nombre>`) en un espacio de índices enteros denso. Con él, las
+ * autoridades de cada usuario se guardan como un `BitSet` en `UserFactory` y
+ * las verificaciones de `@PreAuthorize` se resuelven con una prueba de bit.
+ *
+ * El catálogo se compila al iniciar la aplicación y se recompila con
+ * `refresh()` cada vez que se confirma una escritura de roles o permisos, y
+ * periódicamente para ver las escrituras de otras instancias (ver
+ * `AuthorizationChangeListener`). Cada `UserFactory` guarda el `Snapshot` con el que fue
+ * compilado, por lo que los índices siempre son coherentes con su `BitSet`.
+ */
+
+@Component
+@RequiredArgsConstructor
+public class PermissionCatalog {
+
+    /**
+     * Versión inmutable del catálogo: nombre de autoridad -> índice.
+     * `version` es un resumen de los nombres en orden y de los permisos de cada
+     * rol, de modo que dos catálogos con la misma versión asignan los mismos
+     * índices y conceden los mismos permisos. Así, cambiar los permisos de un
+     * rol invalida los tokens autocontenidos emitidos antes del cambio.
+     */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(List.of(), List.of());
+
+        private final List<String> names;
+        private final Map<String, Integer> indexes;
+        private final String version;
+
+        private Snapshot(List<String> names, List<String> grants) {
+            this.names = Collections.unmodifiableList(names);
+            Map<String, Integer> indexes = new HashMap<>(names.size() * 2);
+            for (int i = 0; i < names.size(); i++) {
+                indexes.put(names.get(i), i);
+            }
+            this.indexes = indexes;
+            this.version = digest(names, grants);
+        }
+
+        private static String digest(List<String> names, List<String> grants) {
+            try {
+                MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                for (String name : names) {
+                    sha.update(name.getBytes(StandardCharsets.UTF_8));
+                    sha.update((byte) '\n');
+                }
+                sha.update((byte) '\n');
+                for (String grant : grants) {
+                    sha.update(grant.getBytes(StandardCharsets.UTF_8));
+                    sha.update((byte) '\n');
+                }
+                return HexFormat.of().formatHex(sha.digest(), 0, 8);
+            } catch (NoSuchAlgorithmException err) {
+                throw new IllegalStateException(err);
+            }
+        }
+
+        /**
+         * @param authority Nombre de la autoridad (permiso o `ROLE_<rol>`).
+         * @return El índice de la autoridad, o -1 si no pertenece al catálogo.
+         */
+        public int indexOf(String authority) {
+            Integer index = indexes.get(authority);
+            return index == null ? -1 : index;
+        }
+
+        public String nameOf(int index) {
+            return names.get(index);
+        }
+
+        public int size() {
+            return names.size();
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionCatalog.class);
+    private static final Pattern AUTHORITY_EXPRESSION = Pattern.compile("has(Any)?(Authority|Role)\\(([^)]*)\\)");
+    private static final Pattern QUOTED = Pattern.compile("'([^']+)'");
+
+    private final PermissionRepository permissionRepository;
+    private final RoleRepository roleRepository;
+    private final ApplicationContext context;
+
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    public Snapshot current() {
+        return current;
+    }
+
+    /**
+     * Recompila el catálogo desde la base de datos. Los permisos se ordenan por
+     * id para que los índices sean estables entre reinicios mientras la tabla no
+     * cambie. Las asignaciones de permisos a roles solo entran en la versión.
+     */
+    @PostConstruct
+    public void refresh() {
+        List<String> names = new ArrayList<>();
+        permissionRepository.findAll().stream()
+                .sorted((a, b) -> Integer.compare(a.getId(), b.getId()))
+                .map(Permission::getName)
+                .forEach(names::add);
+        roleRepository.findAll().stream()
+                .sorted((a, b) -> Integer.compare(a.getId(), b.getId()))
+                .map(Role::getName)
+                .forEach(name -> names.add("ROLE_" + name));
+        Snapshot previous = current;
+        current = new Snapshot(names, roleRepository.findGrants());
+        // Se recompila periódicamente: solo se informa cuando algo cambió
+        if (!current.getVersion().equals(previous.getVersion())) {
+            logger.info("Compiled permission catalog {} with {} authorities", current.getVersion(), names.size());
+        }
+    }
+
+    /**
+     * Compara las autoridades usadas en las anotaciones `@PreAuthorize` de los
+     * controladores con el catálogo y advierte de las que no existen en la base
+     * de datos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyPreAuthorizeAuthorities() {
+        Snapshot snapshot = current;
+        TreeSet<String> missing = new TreeSet<>();
+        for (Object controller : context.getBeansWithAnnotation(Controller.class).values()) {
+            for (Method method : AopUtils.getTargetClass(controller).getDeclaredMethods()) {
+                PreAuthorize preAuthorize = AnnotatedElementUtils.findMergedAnnotation(method, PreAuthorize.class);
+                if (preAuthorize == null) {
+                    continue;
+                }
+                for (String authority : authoritiesIn(preAuthorize.value())) {
+                    if (snapshot.indexOf(authority) < 0) {
+                        missing.add(authority);
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            logger.warn("Authorities used in @PreAuthorize but missing from the permission catalog: {}", missing);
+        }
+    }
+
+    private static List<String> authoritiesIn(String expression) {
+        List<String> authorities = new ArrayList<>();
+        Matcher call = AUTHORITY_EXPRESSION.matcher(expression);
+        while (call.find()) {
+            boolean isRole = call.group(2).equals("Role");
+            Matcher quoted = QUOTED.matcher(call.group(3));
+            while (quoted.find()) {
+                String name = quoted.group(1);
+                authorities.add(isRole && !name.startsWith("ROLE_") ? "ROLE_" + name : name);
+            }
+        }
+        return authorities;
+    }
+}
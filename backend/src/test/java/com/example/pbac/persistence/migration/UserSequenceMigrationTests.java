@@ -0,0 +1,85 @@
+package com.example.pbac.persistence.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * La migración depende de `last_value` e `is_called` de una secuencia de
+ * PostgreSQL, por eso corre sobre un PostgreSQL embebido y no sobre H2.
+ */
+class UserSequenceMigrationTests {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void start() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createSchema() {
+        // Esquema de una base creada con IDENTITY, más la secuencia que agrega
+        // ddl-auto=update
+        jdbcTemplate.execute("DROP TABLE IF EXISTS users");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS users_seq");
+        jdbcTemplate.execute("CREATE TABLE users (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50");
+    }
+
+    @Test
+    void movesTheSequenceAboveExistingIds() {
+        jdbcTemplate.update("INSERT INTO users (id) SELECT generate_series(1, 120)");
+
+        new UserSequenceMigration(jdbcTemplate).migrate();
+
+        long next = nextval();
+        assertThat(next - UserSequenceMigration.ALLOCATION_SIZE + 1).isGreaterThan(120);
+    }
+
+    @Test
+    void leavesAnAdjustedSequenceAlone() {
+        jdbcTemplate.update("INSERT INTO users (id) SELECT generate_series(1, 10)");
+        jdbcTemplate.queryForObject("SELECT setval('users_seq', 500)", Long.class);
+
+        new UserSequenceMigration(jdbcTemplate).migrate();
+
+        assertThat(nextval()).isEqualTo(550);
+    }
+
+    @Test
+    void leavesANewDatabaseAlone() {
+        new UserSequenceMigration(jdbcTemplate).migrate();
+
+        assertThat(nextval()).isEqualTo(1);
+    }
+
+    @Test
+    void isIdempotent() {
+        jdbcTemplate.update("INSERT INTO users (id) SELECT generate_series(1, 75)");
+
+        new UserSequenceMigration(jdbcTemplate).migrate();
+        new UserSequenceMigration(jdbcTemplate).migrate();
+
+        assertThat(nextval()).isEqualTo(75 + UserSequenceMigration.ALLOCATION_SIZE);
+    }
+
+    private long nextval() {
+        return jdbcTemplate.queryForObject("SELECT nextval('users_seq')", Long.class);
+    }
+}
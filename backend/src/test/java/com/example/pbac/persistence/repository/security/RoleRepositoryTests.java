@@ -0,0 +1,103 @@
+package com.example.pbac.persistence.repository.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * La caché de segundo nivel solo se usa con datos confirmados, por eso estas
+ * pruebas no corren dentro de la transacción de `@DataJpaTest`.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RoleRepositoryTests {
+
+    @Autowired
+    private RoleRepository repository;
+
+    @Autowired
+    private PermissionRepository permissionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        Permission findAll = new Permission();
+        findAll.setName("user_findAll");
+        permissionRepository.save(findAll);
+
+        Role role = new Role();
+        role.setName("USUARIO");
+        role.setPermissions(Set.of(findAll));
+        repository.save(role);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+        permissionRepository.deleteAll();
+    }
+
+    @Test
+    void findByNameIsServedFromTheSecondLevelCache() {
+        transactionTemplate.executeWithoutResult(
+                status -> assertThat(repository.findByName("USUARIO").orElseThrow().getPermissions()).hasSize(1));
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Role role = repository.findByName("USUARIO").orElseThrow();
+            assertThat(role.getPermissions()).extracting(Permission::getName).containsExactly("user_findAll");
+        });
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics("security.role_permissions").getHitCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void findGrantsListsThePermissionsOfEachRole() {
+        assertThat(repository.findGrants()).containsExactly("ROLE_USUARIO:user_findAll");
+    }
+
+    @Test
+    void writesThroughTheRepositoryInvalidateTheQueryCache() {
+        Role role = repository.findByName("USUARIO").orElseThrow();
+        role.setName("USUARIO_BASICO");
+        repository.save(role);
+        statistics.clear();
+
+        assertThat(repository.findByName("USUARIO")).isEmpty();
+        assertThat(repository.findByName("USUARIO_BASICO")).isPresent();
+        assertThat(statistics.getQueryCacheHitCount()).isZero();
+        assertThat(statistics.getQueryCacheMissCount()).isEqualTo(2);
+    }
+}
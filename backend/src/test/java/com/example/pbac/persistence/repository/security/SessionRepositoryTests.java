@@ -0,0 +1,174 @@
+package com.example.pbac.persistence.repository.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pbac.persistence.model.security.Session;
+import com.example.pbac.persistence.service.security.SessionReaper;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.ErrorResponses;
+import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.web.security.service.JwtService.VerifiedToken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Las sentencias de `SessionRepository` usan `UPDATE ... RETURNING` y
+ * `SKIP LOCKED`, por eso estas pruebas corren sobre un PostgreSQL embebido y
+ * fuera de la transacción de `@DataJpaTest`: la carrera de la rotación necesita
+ * dos transacciones reales, y `SessionReaper` confirma un lote por transacción.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SessionRepositoryTests {
+
+    private static final EmbeddedPostgres postgres = start();
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+    }
+
+    @Autowired
+    private SessionRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Instant expiresAt;
+
+    @BeforeEach
+    void seed() {
+        expiresAt = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MICROS);
+        repository.insert("old", "access-old", expiresAt);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void rotateReplacesBothTokensAndReturnsThePreviousAccessToken() {
+        Instant renewed = expiresAt.plus(1, ChronoUnit.HOURS);
+
+        assertThat(repository.rotate("old", "new", "access-new", renewed)).isEqualTo("access-old");
+
+        assertThat(repository.findById("old")).isEmpty();
+        Session session = repository.findById("new").orElseThrow();
+        assertThat(session.getAccessToken()).isEqualTo("access-new");
+        assertThat(session.getExpiresAt()).isEqualTo(renewed);
+    }
+
+    @Test
+    void rotateFindsNothingForAnUnknownOrAlreadyRotatedToken() {
+        assertThat(repository.rotate("missing", "new", "access-new", expiresAt)).isNull();
+
+        repository.rotate("old", "new", "access-new", expiresAt);
+        assertThat(repository.rotate("old", "other", "access-other", expiresAt)).isNull();
+    }
+
+    @Test
+    void rotateSkipsAnExpiredSessionTheReaperHasNotDeletedYet() {
+        repository.insert("expired", "access-expired", Instant.now().minus(1, ChronoUnit.MINUTES));
+        repository.insert("legacy", "access-legacy", null);
+
+        assertThat(repository.rotate("expired", "new", "access-new", expiresAt)).isNull();
+        assertThat(repository.findById("expired")).isPresent();
+        assertThat(repository.findById("new")).isEmpty();
+
+        assertThat(repository.rotate("legacy", "new", "access-new", expiresAt)).isEqualTo("access-legacy");
+    }
+
+    @Test
+    void concurrentRotationsOfTheSameTokenHaveASingleWinner() throws Exception {
+        CountDownLatch rotated = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // La primera rotación retiene el candado de la fila hasta confirmar
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            String previous = repository.rotate("old", "new-a", "access-a", expiresAt);
+            rotated.countDown();
+            await(commit);
+            return previous;
+        }));
+        assertThat(rotated.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<String> second = CompletableFuture
+                .supplyAsync(() -> repository.rotate("old", "new-b", "access-b", expiresAt));
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+        commit.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("access-old");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(repository.findAll()).singleElement()
+                .satisfies(session -> assertThat(session.getAccessToken()).isEqualTo("access-a"));
+    }
+
+    @Test
+    void reaperBackfillsAndDeletesLegacySessionsWithoutExpiration() {
+        Instant expired = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MICROS);
+        repository.insert("legacy-expired", "token-expired", null);
+        repository.insert("legacy-active", "token-active", null);
+        repository.insert("legacy-invalid", "token-invalid", null);
+        repository.insert("expired", "access-expired", expired);
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.verify("token-expired"))
+                .thenReturn(new VerifiedToken("user", Date.from(expired), ErrorResponses.EXPIRED_TOKEN));
+        when(jwtService.verify("token-active")).thenReturn(new VerifiedToken("user", Date.from(expiresAt), null));
+        when(jwtService.verify("token-invalid"))
+                .thenReturn(new VerifiedToken(null, null, ErrorResponses.INVALID_TOKEN));
+        Config config = new Config();
+        config.session_reaper_batch_size = 2;
+
+        new SessionReaper(repository, jwtService, config, new SimpleMeterRegistry()).reap();
+
+        assertThat(repository.findAll()).extracting(Session::getRefreshToken)
+                .containsExactlyInAnyOrder("old", "legacy-active");
+        assertThat(repository.findById("legacy-active").orElseThrow().getExpiresAt())
+                .isEqualTo(Date.from(expiresAt).toInstant());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.pbac.persistence.repository.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.web.dto.UserSummaryDto;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class UserRepositoryTests {
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        Permission findAll = permission("user_findAll");
+        Permission create = permission("user_create");
+        Permission delete = permission("user_delete");
+
+        Role admin = role("ADMIN", Set.of(findAll, create, delete));
+        Role user = role("USUARIO", Set.of(findAll));
+
+        for (int i = 0; i < 5; i++) {
+            user(String.format("user%d", i), i % 2 == 0 ? Set.of(admin, user) : Set.of(user));
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findWithAuthoritiesByUsernameLoadsRolesAndPermissionsInOneStatement() {
+        User user = repository.findWithAuthoritiesByUsername("user0").orElseThrow();
+
+        assertThat(Hibernate.isInitialized(user.getRoles())).isTrue();
+        assertThat(user.getRoles()).hasSize(2);
+        for (Role role : user.getRoles()) {
+            assertThat(Hibernate.isInitialized(role.getPermissions())).isTrue();
+        }
+        assertThat(user.getRoles().stream().mapToInt(role -> role.getPermissions().size()).sum()).isEqualTo(4);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        // El fetch join no consulta la caché de segundo nivel
+        assertThat(statistics.getSecondLevelCacheHitCount()).isZero();
+    }
+
+    @Test
+    void findByUsernameDoesNotLoadRoles() {
+        User user = repository.findByUsername("user1").orElseThrow();
+
+        assertThat(Hibernate.isInitialized(user.getRoles())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findAllLoadsRolesButNotPermissionsInOneStatement() {
+        List<User> users = repository.findAll();
+
+        assertThat(users).hasSize(5);
+        for (User user : users) {
+            assertThat(Hibernate.isInitialized(user.getRoles())).isTrue();
+            for (Role role : user.getRoles()) {
+                assertThat(Hibernate.isInitialized(role.getPermissions())).isFalse();
+            }
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void keysetPagesReadProjectionsInOrder() {
+        List<UserSummaryDto> first = repository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2));
+        List<UserSummaryDto> second = repository.findByIdGreaterThanOrderByIdAsc(first.get(1).getId(), Limit.of(2));
+
+        assertThat(first).extracting(UserSummaryDto::getUsername).containsExactly("user0", "user1");
+        assertThat(second).extracting(UserSummaryDto::getUsername).containsExactly("user2", "user3");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void keysetPagesByUsernameDescending() {
+        List<UserSummaryDto> first = repository.findByOrderByUsernameDesc(Limit.of(2));
+        List<UserSummaryDto> second = repository.findByUsernameLessThanOrderByUsernameDesc(
+                first.get(1).getUsername(), Limit.of(2));
+
+        assertThat(first).extracting(UserSummaryDto::getUsername).containsExactly("user4", "user3");
+        assertThat(second).extracting(UserSummaryDto::getUsername).containsExactly("user2", "user1");
+    }
+
+    private Permission permission(String name) {
+        Permission permission = new Permission();
+        permission.setName(name);
+        return entityManager.persist(permission);
+    }
+
+    private Role role(String name, Set<Permission> permissions) {
+        Role role = new Role();
+        role.setName(name);
+        role.setPermissions(permissions);
+        return entityManager.persist(role);
+    }
+
+    private User user(String username, Set<Role> roles) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(String.format("%s@example.com", username));
+        user.setPassword("password");
+        user.setActive(true);
+        user.setRoles(roles);
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.pbac.persistence.service.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.util.metrics.AuthMetrics;
+import com.example.pbac.web.security.ErrorResponses;
+import com.example.pbac.web.security.model.RefreshTokenRequest;
+import com.example.pbac.web.security.model.UserFactory;
+import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.web.security.service.PasswordHashingService;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AuthServiceTests {
+
+    private UserService userService;
+    private JwtService jwtService;
+    private TokenRevocationService revocation;
+    private SessionService sessionService;
+    private AuthService service;
+
+    @BeforeEach
+    void setUp() {
+        userService = mock(UserService.class);
+        jwtService = mock(JwtService.class);
+        revocation = mock(TokenRevocationService.class);
+        sessionService = mock(SessionService.class);
+        service = new AuthService(new Config(), userService, sessionService, jwtService,
+                mock(PasswordHashingService.class), mock(PermissionCatalog.class),
+                new AuthMetrics(new SimpleMeterRegistry()), revocation);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = { "", "Bear", "Bearer", "Bearer ", "Basic dXNlcjpwYXNz", "Token abc" })
+    void aMissingOrMalformedBearerHeaderIsAnInvalidToken(String header) {
+        assertThat(service.logout(header).getErr()).isEqualTo(ErrorResponses.INVALID_TOKEN);
+        assertThat(service.getUserFromToken(header).getErr()).isEqualTo(ErrorResponses.INVALID_TOKEN);
+        assertThat(service.isAuthorized(header, "ADMIN").getErr()).isEqualTo(ErrorResponses.INVALID_TOKEN);
+
+        verifyNoInteractions(jwtService, userService, revocation);
+    }
+
+    @Test
+    void aSessionWhoseAccessTokenExpiredCannotBeRefreshed() {
+        when(jwtService.hasRefreshTokenSubject("refresh")).thenReturn(true);
+        when(jwtService.refreshTokenSubject("refresh")).thenReturn(Optional.of("user"));
+        when(userService.findUserFactory("user"))
+                .thenReturn(Optional.of(new UserFactory("user", List.of(), "", PermissionCatalog.Snapshot.EMPTY)));
+        when(jwtService.generateRefreshToken("user")).thenReturn("rotated");
+        when(sessionService.rotate(eq("refresh"), eq("rotated"), any(), any())).thenReturn(Optional.of("access"));
+        when(jwtService.verify("access"))
+                .thenReturn(new JwtService.VerifiedToken("user", new Date(0), ErrorResponses.EXPIRED_TOKEN));
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("refresh");
+
+        assertThat(service.refreshToken(request).getErr()).isEqualTo(ErrorResponses.EXPIRED_TOKEN);
+        verify(sessionService).delete("rotated");
+    }
+
+    @Test
+    void aForgedRefreshTokenIsRejectedBeforeAnyLookup() {
+        when(jwtService.hasRefreshTokenSubject("forged")).thenReturn(true);
+        when(jwtService.refreshTokenSubject("forged")).thenReturn(Optional.empty());
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("forged");
+
+        assertThat(service.refreshToken(request).getErr().getMessage()).isEqualTo("No hay una sesión valida.");
+        verifyNoInteractions(userService, sessionService);
+    }
+
+    @Test
+    void anUnknownOrDisabledUserLooksLikeAnInvalidSession() {
+        when(jwtService.hasRefreshTokenSubject(any())).thenReturn(true);
+        when(jwtService.refreshTokenSubject("missing")).thenReturn(Optional.of("missing"));
+        when(jwtService.refreshTokenSubject("disabled")).thenReturn(Optional.of("disabled"));
+        UserFactory disabled = mock(UserFactory.class);
+        when(userService.findUserFactory("missing")).thenReturn(Optional.empty());
+        when(userService.findUserFactory("disabled")).thenReturn(Optional.of(disabled));
+
+        for (String token : new String[] { "missing", "disabled" }) {
+            RefreshTokenRequest request = new RefreshTokenRequest();
+            request.setRefreshToken(token);
+            assertThat(service.refreshToken(request).getErr().getMessage()).as(token)
+                    .isEqualTo("No hay una sesión valida.");
+        }
+        verifyNoInteractions(sessionService);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.pbac.persistence.service.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.web.security.service.AuthoritySnapshotCache;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+/**
+ * La recompilación ocurre al confirmar, por eso estas pruebas no corren dentro
+ * de la transacción de `@DataJpaTest`.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({ AuthorizationChangeListener.class, PermissionCatalog.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthorizationChangeListenerTests {
+
+    @MockBean
+    private AuthoritySnapshotCache authorityCache;
+
+    @Autowired
+    private PermissionCatalog catalog;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PermissionRepository permissionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthorizationChangeListener listener;
+
+    private Permission findAll;
+
+    @BeforeEach
+    void seed() {
+        findAll = new Permission();
+        findAll.setName("user_findAll");
+        permissionRepository.save(findAll);
+        Role role = new Role();
+        role.setName("USUARIO");
+        role.setPermissions(new HashSet<>());
+        roleRepository.save(role);
+        clearInvocations(authorityCache);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM roles_permissions");
+        roleRepository.deleteAll();
+        permissionRepository.deleteAll();
+    }
+
+    @Test
+    void newRolesAndPermissionsEnterTheCatalogOnCommit() {
+        assertThat(catalog.current().indexOf("user_findAll")).isNotNegative();
+        assertThat(catalog.current().indexOf("ROLE_USUARIO")).isNotNegative();
+
+        Role admin = new Role();
+        admin.setName("ADMIN");
+        roleRepository.save(admin);
+
+        assertThat(catalog.current().indexOf("ROLE_ADMIN")).isNotNegative();
+        verify(authorityCache).clear();
+    }
+
+    @Test
+    void grantingAPermissionChangesTheVersionOnceAfterCommit() {
+        String version = catalog.current().getVersion();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Solo cambia `roles_permissions`, varias veces en la misma transacción
+            Role role = roleRepository.findByName("USUARIO").orElseThrow();
+            role.getPermissions().add(findAll);
+            roleRepository.flush();
+            role.getPermissions().clear();
+            roleRepository.flush();
+            role.getPermissions().add(findAll);
+            roleRepository.flush();
+
+            assertThat(catalog.current().getVersion()).isEqualTo(version);
+            verify(authorityCache, never()).clear();
+        });
+
+        assertThat(catalog.current().getVersion()).isNotEqualTo(version);
+        verify(authorityCache, times(1)).clear();
+    }
+
+    @Test
+    void aRolledBackWriteLeavesTheCatalogUnchanged() {
+        String version = catalog.current().getVersion();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Role role = roleRepository.findByName("USUARIO").orElseThrow();
+            role.getPermissions().add(findAll);
+            roleRepository.saveAndFlush(role);
+            status.setRollbackOnly();
+        });
+
+        assertThat(catalog.current().getVersion()).isEqualTo(version);
+        verify(authorityCache, never()).clear();
+    }
+
+    @Test
+    void pollingPicksUpWritesMadeByAnotherInstance() {
+        String version = catalog.current().getVersion();
+        Role role = roleRepository.findByName("USUARIO").orElseThrow();
+
+        // SQL directo: como otra instancia, no pasa por los eventos de Hibernate
+        jdbcTemplate.update("INSERT INTO roles_permissions (roles_id, permissions_id) VALUES (?, ?)", role.getId(),
+                findAll.getId());
+        assertThat(catalog.current().getVersion()).isEqualTo(version);
+
+        listener.pollCatalog();
+        assertThat(catalog.current().getVersion()).isNotEqualTo(version);
+        verify(authorityCache, times(1)).clear();
+
+        listener.pollCatalog();
+        verify(authorityCache, times(1)).clear();
+    }
+}
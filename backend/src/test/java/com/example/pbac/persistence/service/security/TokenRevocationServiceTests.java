@@ -0,0 +1,135 @@
+package com.example.pbac.persistence.service.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.pbac.persistence.model.security.RevokedToken;
+import com.example.pbac.persistence.repository.security.RevokedTokenRepository;
+import com.example.pbac.util.config.Config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * El repositorio simulado guarda los `jti` revocados en una lista, que hace de
+ * tabla `revoked_token`.
+ */
+class TokenRevocationServiceTests {
+
+    private final List<String> table = new CopyOnWriteArrayList<>();
+    private RevokedTokenRepository repository;
+    private SimpleMeterRegistry registry;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RevokedTokenRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            table.add(invocation.<RevokedToken>getArgument(0).getJti());
+            return invocation.getArgument(0);
+        });
+        when(repository.existsById(anyString())).thenAnswer(invocation -> table.contains(invocation.getArgument(0)));
+        when(repository.findActiveJtis(any())).thenAnswer(invocation -> List.copyOf(table));
+
+        Config config = new Config();
+        config.revocation_expected_tokens = 1000;
+        config.revocation_false_positive_rate = 0.001;
+        registry = new SimpleMeterRegistry();
+        service = new TokenRevocationService(repository, config, registry);
+    }
+
+    @Test
+    void aMissIsAnsweredByTheFilterAlone() {
+        service.revoke("revoked", expiration());
+
+        assertThat(service.isRevoked("revoked")).isTrue();
+        assertThat(service.isRevoked("other")).isFalse();
+        assertThat(service.isRevoked(null)).isFalse();
+
+        verify(repository, never()).existsById("other");
+        assertThat(checks("revoked")).isEqualTo(1);
+        assertThat(checks("negative")).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildKeepsOnlyTheTokensStillInTheTable() {
+        service.revoke("expired", expiration());
+        service.revoke("active", expiration());
+        // deleteExpired quitó "expired" de la tabla
+        table.remove("expired");
+
+        service.rebuild();
+
+        verify(repository).deleteExpired(any());
+        assertThat(service.isRevoked("active")).isTrue();
+        assertThat(service.isRevoked("expired")).isFalse();
+        verify(repository, never()).existsById("expired");
+    }
+
+    @Test
+    void rebuildPicksUpRevocationsFromOtherInstances() {
+        table.add("elsewhere");
+        assertThat(service.isRevoked("elsewhere")).isFalse();
+        assertThat(service.isRevokedAnywhere("elsewhere")).isTrue();
+
+        service.rebuild();
+
+        assertThat(service.isRevoked("elsewhere")).isTrue();
+    }
+
+    @Test
+    void aRevocationDuringARebuildIsNotLost() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // La reconstrucción lee la tabla antes de la revocación y se detiene
+        when(repository.findActiveJtis(any())).thenAnswer(invocation -> {
+            List<String> snapshot = List.copyOf(table);
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return snapshot;
+        });
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(service::rebuild);
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> revoke = CompletableFuture.runAsync(() -> service.revoke("during", expiration()));
+        Thread.sleep(100);
+        assertThat(revoke).isNotDone();
+        release.countDown();
+        rebuild.get(5, TimeUnit.SECONDS);
+        revoke.get(5, TimeUnit.SECONDS);
+
+        assertThat(service.isRevoked("during")).isTrue();
+    }
+
+    @Test
+    void aRevokedSubjectIsRejectedWithoutAffectingOthers() {
+        service.revokeSubject("disabled");
+
+        assertThat(service.isSubjectRevoked("disabled")).isTrue();
+        assertThat(service.isSubjectRevoked("active")).isFalse();
+        assertThat(service.isRevoked("disabled")).isFalse();
+        assertThat(table).singleElement().asString().hasSize(36);
+    }
+
+    private double checks(String result) {
+        return registry.get("auth.revocation.checks").tag("result", result).counter().count();
+    }
+
+    private static Date expiration() {
+        return new Date(System.currentTimeMillis() + 60_000);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.pbac.persistence.service.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.persistence.repository.security.UserRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.dto.UserImportReportDto;
+import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.Result;
+import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * El `EntityManager` simulado registra los usuarios de cada `flush` y falla
+ * cuando uno de ellos es `conflict`, como lo haría una restricción única
+ * violada por una inserción concurrente.
+ */
+class UserImportServiceTests {
+
+    private UserRepository userRepository;
+    private EntityManager entityManager;
+    private UserImportService service;
+    private final List<List<String>> flushes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.user_import_chunk_size = 2;
+        config.user_import_threads = 1;
+        config.user_import_max_reported_errors = 10;
+
+        userRepository = mock(UserRepository.class);
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(roleRepository.findByName(anyString())).thenReturn(Optional.of(Role.getDefault()));
+        Role admin = new Role();
+        admin.setId(2);
+        admin.setName("ADMIN");
+        when(roleRepository.findByName("ADMIN")).thenReturn(Optional.of(admin));
+        PasswordEncoderProvider passwordEncoderProvider = mock(PasswordEncoderProvider.class);
+        when(passwordEncoderProvider.passwordEncoder()).thenReturn(NoOpPasswordEncoder.getInstance());
+
+        service = new UserImportService(userRepository, roleRepository, passwordEncoderProvider,
+                mock(PlatformTransactionManager.class), new ObjectMapper(), config);
+
+        entityManager = mock(EntityManager.class);
+        List<String> pending = new ArrayList<>();
+        doAnswer(invocation -> pending.add(invocation.<User>getArgument(0).getUsername()))
+                .when(entityManager).persist(any(User.class));
+        doAnswer(invocation -> {
+            List<String> flushed = List.copyOf(pending);
+            pending.clear();
+            flushes.add(flushed);
+            if (flushed.contains("conflict")) {
+                throw new PersistenceException("duplicate key value violates unique constraint");
+            }
+            return null;
+        }).when(entityManager).flush();
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void importsInChunksOfTheConfiguredSize() {
+        UserImportReportDto report = importOk(ndjson("a", "b", "c", "d", "e"));
+
+        assertThat(report.getTotal()).isEqualTo(5);
+        assertThat(report.getImported()).isEqualTo(5);
+        assertThat(report.getFailed()).isZero();
+        assertThat(flushes).containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+        // Una consulta de duplicados por bloque, no por fila
+        verify(userRepository, times(3)).findExistingUsernames(anyList());
+    }
+
+    @Test
+    void retriesAFailedChunkRowByRow() {
+        UserImportReportDto report = importOk(ndjson("a", "conflict", "c"));
+
+        assertThat(flushes).containsExactly(List.of("a", "conflict"), List.of("a"), List.of("conflict"),
+                List.of("c"));
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getLine()).isEqualTo(2);
+            assertThat(error.getUsername()).isEqualTo("conflict");
+        });
+    }
+
+    @Test
+    void rejectsRowsAlreadyInTheDatabaseBeforeInserting() {
+        when(userRepository.findExistingUsernames(anyList())).thenReturn(List.of("b"));
+
+        UserImportReportDto report = importOk(ndjson("a", "b"));
+
+        assertThat(flushes).containsExactly(List.of("a"));
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.getMessage()).isEqualTo("El nombre de usuario ya existe"));
+    }
+
+    @Test
+    void rejectsAConcurrentImport() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        };
+        CompletableFuture<Result<UserImportReportDto, Error>> first = CompletableFuture
+                .supplyAsync(() -> service.importUsers(blocking, UserImportService.NDJSON, false));
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Result<UserImportReportDto, Error> second = service.importUsers(ndjson("a"), UserImportService.NDJSON, false);
+        release.countDown();
+
+        assertThat(second.getErr().getErrorKind()).isEqualTo(ErrorKind.ServiceUnavailableError);
+        assertThat(first.get(5, TimeUnit.SECONDS).getOk()).isNotNull();
+        // Terminada la primera, el candado queda libre
+        assertThat(service.importUsers(ndjson("a"), UserImportService.NDJSON, false).getOk()).isNotNull();
+    }
+
+    @Test
+    void assigningANonDefaultRoleRequiresItsOwnAuthority() {
+        UserImportReportDto report = importOk(ndjsonWithRoles("[\"ADMIN\"]", "[\"USUARIO\"]"), false);
+
+        assertThat(flushes).containsExactly(List.of("b"));
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getUsername()).isEqualTo("a");
+            assertThat(error.getMessage()).isEqualTo("No tiene permiso para asignar el rol ADMIN");
+        });
+    }
+
+    @Test
+    void assigningANonDefaultRoleWithTheAuthority() {
+        UserImportReportDto report = importOk(ndjsonWithRoles("[\"ADMIN\"]", "[\"USUARIO\"]"), true);
+
+        assertThat(flushes).containsExactly(List.of("a", "b"));
+        assertThat(report.getFailed()).isZero();
+    }
+
+    private UserImportReportDto importOk(InputStream input) {
+        return importOk(input, false);
+    }
+
+    private UserImportReportDto importOk(InputStream input, boolean canAssignRoles) {
+        Result<UserImportReportDto, Error> result = service.importUsers(input, UserImportService.NDJSON,
+                canAssignRoles);
+        assertThat(result.getErr()).isNull();
+        return result.getOk();
+    }
+
+    private static InputStream ndjson(String... usernames) {
+        StringBuilder text = new StringBuilder();
+        for (String username : usernames) {
+            text.append(String.format("{\"username\":\"%s\",\"email\":\"%s@example.com\",\"password\":\"secret\"}%n",
+                    username, username));
+        }
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Una fila por cada lista de roles, con los usuarios `a`, `b`, ...
+     */
+    private static InputStream ndjsonWithRoles(String... roles) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < roles.length; i++) {
+            String username = String.valueOf((char) ('a' + i));
+            text.append(String.format(
+                    "{\"username\":\"%s\",\"email\":\"%s@example.com\",\"password\":\"secret\",\"roles\":%s}%n",
+                    username, username, roles[i]));
+        }
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
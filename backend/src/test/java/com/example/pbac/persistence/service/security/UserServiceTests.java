@@ -0,0 +1,71 @@
+package com.example.pbac.persistence.service.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.UserRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.service.AuthoritySnapshotCache;
+import com.example.pbac.web.security.service.PasswordHashingService;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+class UserServiceTests {
+
+    private PasswordHashingService passwordHashingService;
+    private UserRepository repository;
+    private UserService service;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashingService = mock(PasswordHashingService.class);
+        repository = mock(UserRepository.class);
+        service = new UserService(passwordHashingService, repository, mock(AuthoritySnapshotCache.class),
+                mock(PermissionCatalog.class), new Config(), mock(TokenRevocationService.class));
+        User stored = new User();
+        stored.setId(1L);
+        stored.setUsername("ana");
+        stored.setPassword("hash");
+        stored.setVersion(3);
+        when(repository.findById(1L)).thenReturn(Optional.of(stored));
+    }
+
+    @Test
+    void aStaleVersionIsRejectedBeforeHashingOrWriting() {
+        User update = changes("new-password");
+
+        assertThat(service.update(update, 2L).getErr().getErrorKind())
+                .isEqualTo(ErrorKind.PreconditionFailedError);
+        verifyNoInteractions(passwordHashingService);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void aWriteThatOvertakesTheReadIsAPreconditionFailure() {
+        // La versión coincidía al leer, pero otra escritura se confirmó antes del UPDATE
+        when(repository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L));
+
+        assertThat(service.update(changes(null), 3L).getErr().getErrorKind())
+                .isEqualTo(ErrorKind.PreconditionFailedError);
+    }
+
+    private static User changes(String password) {
+        User user = new User();
+        user.setId(1L);
+        user.setFirstname("Ana");
+        user.setPassword(password);
+        return user;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.pbac.persistence.store.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.example.pbac.persistence.model.security.Session;
+import com.example.pbac.persistence.repository.security.SessionRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.service.JwtService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InMemorySessionStoreTests {
+
+    private SessionRepository repository;
+    private SimpleMeterRegistry registry;
+    private Config config;
+    private Instant expiresAt;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SessionRepository.class);
+        registry = new SimpleMeterRegistry();
+        config = new Config();
+        config.session_store_stripes = 4;
+        config.session_store_write_behind = true;
+        config.session_store_queue_capacity = 100;
+        expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+    }
+
+    private InMemorySessionStore store() {
+        return new InMemorySessionStore(repository, mock(JwtService.class), config, registry);
+    }
+
+    @Test
+    void concurrentRotationsOfTheSameTokenHaveASingleWinner() throws Exception {
+        InMemorySessionStore store = store();
+        store.save(session("old", "access-old", expiresAt));
+
+        List<Callable<Optional<String>>> rotations = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String next = "new-" + i;
+            rotations.add(() -> store.rotate("old", next, "access-" + next, expiresAt));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Optional<String>> results = new ArrayList<>();
+        try {
+            for (Future<Optional<String>> result : executor.invokeAll(rotations)) {
+                results.add(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(results).filteredOn(Optional::isPresent).singleElement()
+                .isEqualTo(Optional.of("access-old"));
+        assertThat(store.findById("old")).isEmpty();
+    }
+
+    @Test
+    void sessionsInDifferentStripesRotateIndependently() throws Exception {
+        InMemorySessionStore store = store();
+        List<Callable<Optional<String>>> rotations = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            String token = "token-" + i;
+            store.save(session(token, "access-" + i, expiresAt));
+            rotations.add(() -> store.rotate(token, token + "-next", "next", expiresAt));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Optional<String>> result : executor.invokeAll(rotations)) {
+                assertThat(result.get()).isPresent();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < 64; i++) {
+            assertThat(store.findById("token-" + i)).isEmpty();
+            assertThat(store.findById("token-" + i + "-next")).get().extracting(Session::getAccessToken)
+                    .isEqualTo("next");
+        }
+    }
+
+    @Test
+    void expiredSessionsCannotBeFoundOrRotated() {
+        InMemorySessionStore store = store();
+        store.save(session("expired", "access", Instant.now().minusSeconds(1)));
+
+        assertThat(store.findById("expired")).isEmpty();
+        assertThat(store.rotate("expired", "new", "access-new", expiresAt)).isEmpty();
+    }
+
+    @Test
+    void writesAreDeferredUntilFlushAndKeepTheirOrder() {
+        InMemorySessionStore store = store();
+        store.save(session("a", "access-a", expiresAt));
+        store.rotate("a", "b", "access-b", expiresAt);
+        store.delete("b");
+
+        verifyNoInteractions(repository);
+        assertThat(pendingWrites()).isEqualTo(3);
+
+        store.flush();
+
+        InOrder order = inOrder(repository);
+        order.verify(repository).insert("a", "access-a", expiresAt);
+        order.verify(repository).rotate("a", "b", "access-b", expiresAt);
+        order.verify(repository).deleteByRefreshToken("b");
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void aFullQueueIsDrainedByTheWriterInOrder() {
+        config.session_store_queue_capacity = 2;
+        InMemorySessionStore store = store();
+        store.save(session("a", "access-a", expiresAt));
+        store.save(session("b", "access-b", expiresAt));
+        verifyNoInteractions(repository);
+
+        store.save(session("c", "access-c", expiresAt));
+
+        InOrder order = inOrder(repository);
+        order.verify(repository).insert("a", "access-a", expiresAt);
+        order.verify(repository).insert("b", "access-b", expiresAt);
+        order.verify(repository).insert("c", "access-c", expiresAt);
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void aFailedWriteDoesNotBlockTheRest() {
+        when(repository.rotate(anyString(), anyString(), anyString(), any())).thenThrow(new IllegalStateException());
+        InMemorySessionStore store = store();
+        store.save(session("a", "access-a", expiresAt));
+        store.rotate("a", "b", "access-b", expiresAt);
+        store.delete("b");
+
+        store.flush();
+
+        verify(repository).deleteByRefreshToken("b");
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void withoutWriteBehindNothingIsPersisted() {
+        config.session_store_write_behind = false;
+        InMemorySessionStore store = store();
+        store.reload();
+        store.save(session("a", "access-a", expiresAt));
+        store.rotate("a", "b", "access-b", expiresAt);
+        store.flush();
+
+        verifyNoInteractions(repository);
+        assertThat(store.findById("b")).isPresent();
+    }
+
+    @Test
+    void reloadSkipsExpiredSessions() {
+        when(repository.findAll()).thenReturn(List.of(session("live", "access-live", expiresAt),
+                session("expired", "access-expired", Instant.now().minusSeconds(1))));
+        InMemorySessionStore store = store();
+
+        store.reload();
+
+        assertThat(store.findById("live")).isPresent();
+        assertThat(store.findById("expired")).isEmpty();
+        verify(repository, never()).insert(anyString(), anyString(), any());
+    }
+
+    private double pendingWrites() {
+        return registry.get("session.store.pending_writes").gauge().value();
+    }
+
+    private static Session session(String refreshToken, String accessToken, Instant expiresAt) {
+        Session session = new Session();
+        session.setRefreshToken(refreshToken);
+        session.setAccessToken(accessToken);
+        session.setExpiresAt(expiresAt);
+        return session;
+    }
+}
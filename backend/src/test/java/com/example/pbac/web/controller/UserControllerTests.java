@@ -0,0 +1,111 @@
+package com.example.pbac.web.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.service.security.UserExportService;
+import com.example.pbac.persistence.service.security.UserImportService;
+import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.Result;
+
+/**
+ * Solo el manejo de `If-None-Match` e `If-Match`; la autorización de
+ * `@PreAuthorize` no se aplica fuera del contexto de Spring.
+ */
+class UserControllerTests {
+
+    private UserService service;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        service = mock(UserService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new UserController(service, mock(UserExportService.class),
+                mock(UserImportService.class), new Config())).build();
+    }
+
+    @Test
+    void aMatchingIfNoneMatchIsNotModifiedWithoutLoadingTheUser() throws Exception {
+        when(service.findVersion(1L)).thenReturn(Optional.of(3L));
+
+        mvc.perform(get("/user/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+        verify(service, never()).findById(any());
+    }
+
+    @Test
+    void aStaleIfNoneMatchReturnsTheUserWithItsETag() throws Exception {
+        when(service.findVersion(1L)).thenReturn(Optional.of(3L));
+        when(service.findById(1L)).thenReturn(ok(user(3)));
+
+        mvc.perform(get("/user/1").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    @Test
+    void aStaleIfMatchIsPreconditionFailed() throws Exception {
+        when(service.update(any(), eq(2L))).thenReturn(Result.ofErr(new Error(
+                "El usuario fue modificado por otra persona, vuelva a cargarlo",
+                "Version mismatch for user with id: 1", ErrorKind.PreconditionFailedError)));
+
+        mvc.perform(put("/user/update").header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"id\":1,\"firstname\":\"Ana\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void aMalformedIfMatchIsRejectedBeforeUpdating() throws Exception {
+        mvc.perform(put("/user/update").header(HttpHeaders.IF_MATCH, "W/\"2\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"id\":1,\"firstname\":\"Ana\"}"))
+                .andExpect(status().isPreconditionFailed());
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void aMatchingIfMatchUpdatesAndReturnsTheNewETag() throws Exception {
+        when(service.update(any(), eq(2L))).thenReturn(ok(user(3)));
+
+        mvc.perform(put("/user/update").header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"id\":1,\"firstname\":\"Ana\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    private static Result<User, Error> ok(User user) {
+        Result<User, Error> result = new Result<>();
+        result.setOk(user);
+        return result;
+    }
+
+    private static User user(long version) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("ana");
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.pbac.web.middleware;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.model.security.User;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.persistence.service.security.TokenRevocationService;
+import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.util.metrics.AuthMetrics;
+import com.example.pbac.web.security.model.UserFactory;
+import com.example.pbac.web.security.service.JwtKeyRing;
+import com.example.pbac.web.security.service.JwtService;
+import com.example.pbac.web.security.service.PermissionCatalog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * El usuario `admin` tiene el rol `ADMIN` con `user_findAll`. Su token
+ * autocontenido se emite con el catálogo inicial; cuando el filtro no puede
+ * confiar en él, carga el usuario con `UserDetailsService`, que aquí devuelve
+ * la instantánea con `user_delete` para distinguir un camino del otro.
+ */
+class JwtAuthenticationFilterTests {
+
+    private RoleRepository roleRepository;
+    private PermissionCatalog catalog;
+    private UserDetailsService userDetailsService;
+    private TokenRevocationService revocation;
+    private JwtAuthenticationFilter filter;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.secret_key = "bb6a14ac2eba9b3e01f52ab78a81c08c57f6cbda0c38736c6bf683e33a399481";
+        config.jwt_algorithm = "HS256";
+        config.expiration_millis = 60_000;
+        config.self_contained = true;
+
+        PermissionRepository permissionRepository = mock(PermissionRepository.class);
+        roleRepository = mock(RoleRepository.class);
+        when(permissionRepository.findAll())
+                .thenReturn(List.of(permission(1, "user_findAll"), permission(2, "user_delete")));
+        when(roleRepository.findAll()).thenReturn(List.of(role("user_findAll")));
+        when(roleRepository.findGrants()).thenReturn(List.of("ROLE_ADMIN:user_findAll"));
+        catalog = new PermissionCatalog(permissionRepository, roleRepository, mock(ApplicationContext.class));
+        catalog.refresh();
+
+        userDetailsService = mock(UserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("admin"))
+                .thenReturn(new UserFactory(admin("user_delete"), catalog.current()));
+        UserService userService = mock(UserService.class);
+        when(userService.userDetailsService()).thenReturn(userDetailsService);
+        revocation = mock(TokenRevocationService.class);
+
+        JwtService jwtService = new JwtService(config, new JwtKeyRing(config));
+        filter = new JwtAuthenticationFilter(config, jwtService, userService, catalog,
+                new AuthMetrics(new SimpleMeterRegistry()), revocation);
+        token = jwtService.generateAccessToken(new UserFactory(admin("user_findAll"), catalog.current()));
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void aTokenFromTheCurrentCatalogIsTrustedWithoutLoadingTheUser() throws Exception {
+        assertThat(authenticate().getAuthorities()).extracting(Object::toString)
+                .containsExactly("user_findAll", "ROLE_ADMIN");
+        verify(userDetailsService, never()).loadUserByUsername("admin");
+    }
+
+    @Test
+    void aTokenFromAnotherCatalogVersionLoadsTheUser() throws Exception {
+        // Otra instancia cambió los permisos de ADMIN y este catálogo ya lo vio
+        when(roleRepository.findGrants()).thenReturn(List.of("ROLE_ADMIN:user_delete"));
+        catalog.refresh();
+
+        assertThat(authenticate().getAuthorities()).extracting(Object::toString)
+                .containsExactly("ROLE_ADMIN", "user_delete");
+        verify(userDetailsService).loadUserByUsername("admin");
+    }
+
+    @Test
+    void aRevokedSubjectLoadsTheUser() throws Exception {
+        when(revocation.isSubjectRevoked("admin")).thenReturn(true);
+
+        assertThat(authenticate().getAuthorities()).extracting(Object::toString)
+                .containsExactly("ROLE_ADMIN", "user_delete");
+        verify(userDetailsService).loadUserByUsername("admin");
+    }
+
+    private Authentication authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/all");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(200);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static User admin(String permission) {
+        User user = new User();
+        user.setUsername("admin");
+        user.setActive(true);
+        user.setRoles(Set.of(role(permission)));
+        return user;
+    }
+
+    private static Role role(String permission) {
+        Role role = new Role();
+        role.setId(1);
+        role.setName("ADMIN");
+        role.setPermissions(Set.of(permission(permission.equals("user_findAll") ? 1 : 2, permission)));
+        return role;
+    }
+
+    private static Permission permission(int id, String name) {
+        Permission permission = new Permission();
+        permission.setId(id);
+        permission.setName(name);
+        return permission;
+    }
+}
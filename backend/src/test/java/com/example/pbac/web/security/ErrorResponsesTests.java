@@ -0,0 +1,39 @@
+package com.example.pbac.web.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ErrorResponsesTests {
+
+    @Test
+    void constantsCannotBeModified() {
+        assertThatThrownBy(() -> ErrorResponses.INVALID_TOKEN.setMessage("changed"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> ErrorResponses.INVALID_TOKEN.setCause("changed"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> ErrorResponses.INVALID_TOKEN.setErrorKind(ErrorKind.ServiceError))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        assertThat(ErrorResponses.INVALID_TOKEN)
+                .isEqualTo(new Error("El token no es válido", "Invalid JWT", ErrorKind.InvalidTokenError));
+    }
+
+    @Test
+    void constantsAndOtherErrorsAreWrittenAlike() throws Exception {
+        MockHttpServletResponse fixed = new MockHttpServletResponse();
+        ErrorResponses.write(fixed, HttpStatus.UNAUTHORIZED, ErrorResponses.REVOKED_TOKEN);
+
+        MockHttpServletResponse copy = new MockHttpServletResponse();
+        Error err = ErrorResponses.REVOKED_TOKEN;
+        ErrorResponses.write(copy, HttpStatus.UNAUTHORIZED,
+                new Error(err.getMessage(), err.getCause(), err.getErrorKind()));
+
+        assertThat(fixed.getStatus()).isEqualTo(401);
+        assertThat(fixed.getContentAsString()).isEqualTo(copy.getContentAsString())
+                .isEqualTo(Result.ofErr(err).toJson());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.pbac.web.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreFilter;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+/**
+ * Las cuatro anotaciones de `prePostEnabled` siguen activas con los
+ * interceptores de `MethodSecurityConfig`, y las expresiones pueden usar beans.
+ */
+@SpringJUnitConfig(MethodSecurityConfigTests.TestConfig.class)
+class MethodSecurityConfigTests {
+
+    @Configuration
+    @Import(MethodSecurityConfig.class)
+    static class TestConfig {
+        @Bean
+        Documents documents() {
+            return new Documents();
+        }
+
+        @Bean
+        Owners owners() {
+            return new Owners();
+        }
+    }
+
+    static class Owners {
+        public boolean owns(String username, String document) {
+            return document.startsWith(username + "-");
+        }
+    }
+
+    static class Documents {
+        @PreAuthorize("hasAuthority('user_findAll')")
+        public String find(String name) {
+            return name;
+        }
+
+        @PostAuthorize("@owners.owns(authentication.name, returnObject)")
+        public String open(String name) {
+            return name;
+        }
+
+        @PreFilter("@owners.owns(authentication.name, filterObject)")
+        public List<String> save(List<String> names) {
+            return names;
+        }
+
+        @PostFilter("@owners.owns(authentication.name, filterObject)")
+        public List<String> list(List<String> names) {
+            return new ArrayList<>(names);
+        }
+    }
+
+    @Autowired
+    private Documents documents;
+
+    @Test
+    @WithMockUser(username = "ana", authorities = "user_findAll")
+    void preAuthorizeUsesTheCompiledAuthorities() {
+        assertThat(documents.find("ana-1")).isEqualTo("ana-1");
+    }
+
+    @Test
+    @WithMockUser(username = "ana", authorities = "user_create")
+    void preAuthorizeDenies() {
+        assertThatThrownBy(() -> documents.find("ana-1")).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @WithMockUser(username = "ana")
+    void postAuthorizeChecksTheReturnedValue() {
+        assertThat(documents.open("ana-1")).isEqualTo("ana-1");
+        assertThatThrownBy(() -> documents.open("luis-1")).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @WithMockUser(username = "ana")
+    void preFilterAndPostFilterDropOtherUsersDocuments() {
+        assertThat(documents.save(new ArrayList<>(List.of("ana-1", "luis-1")))).containsExactly("ana-1");
+        assertThat(documents.list(List.of("luis-2", "ana-2"))).containsExactly("ana-2");
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.pbac.web.security.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.method.MethodAuthorizationDeniedHandler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TimedAuthorizationManagerTests {
+
+    private interface Delegate extends AuthorizationManager<MethodInvocation>, MethodAuthorizationDeniedHandler {
+    }
+
+    private Delegate delegate;
+    private ObjectProvider<MeterRegistry> provider;
+    private SimpleMeterRegistry registry;
+    private MethodInvocation invocation;
+    private TimedAuthorizationManager manager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        delegate = mock(Delegate.class);
+        registry = new SimpleMeterRegistry();
+        provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(registry);
+        invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(String.class.getMethod("length"));
+        manager = new TimedAuthorizationManager(delegate, provider);
+    }
+
+    @Test
+    void eachOutcomeIsRecordedOnItsOwnTimer() {
+        when(delegate.check(any(), any())).thenReturn(new AuthorizationDecision(true),
+                new AuthorizationDecision(false), null).thenThrow(new IllegalStateException());
+
+        manager.check(() -> null, invocation);
+        manager.check(() -> null, invocation);
+        assertThat(manager.check(() -> null, invocation)).isNull();
+        assertThatThrownBy(() -> manager.check(() -> null, invocation)).isInstanceOf(IllegalStateException.class);
+
+        for (String outcome : new String[] { "granted", "denied", "abstain", "error" }) {
+            assertThat(registry.get("auth.method_security").tags("method", "String.length", "outcome", outcome)
+                    .timer().count()).as(outcome).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void timersAreResolvedOncePerMethod() {
+        when(delegate.check(any(), any())).thenReturn(new AuthorizationDecision(true));
+
+        for (int i = 0; i < 3; i++) {
+            manager.check(() -> null, invocation);
+        }
+
+        verify(provider, times(1)).getIfAvailable();
+        assertThat(registry.get("auth.method_security").tag("outcome", "granted").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void decisionsBeforeTheRegistryExistAreNotRecorded() {
+        when(provider.getIfAvailable()).thenReturn(null, registry);
+        when(delegate.check(any(), any())).thenReturn(new AuthorizationDecision(true));
+
+        manager.check(() -> null, invocation);
+        assertThat(registry.find("auth.method_security").timer()).isNull();
+
+        manager.check(() -> null, invocation);
+        assertThat(registry.get("auth.method_security").tag("outcome", "granted").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.pbac.web.security.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.model.UserFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AuthoritySnapshotCacheTests {
+
+    private SimpleMeterRegistry registry;
+    private AuthoritySnapshotCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.auth_cache_max_size = 100;
+        config.auth_cache_ttl_millis = 60_000;
+        registry = new SimpleMeterRegistry();
+        cache = new AuthoritySnapshotCache(config, registry);
+    }
+
+    @Test
+    void hitsAndMissesArePublished() {
+        cache.get("user", this::load);
+        cache.get("user", this::load);
+        cache.get("user", this::load);
+
+        assertThat(gets("hit")).isEqualTo(2);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(registry.get("auth.cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void aLoadOverlappingAnEvictionIsNotCached() {
+        // La escritura (y su `evict`) ocurre mientras la carga lee la base de datos
+        UserFactory stale = cache.get("user", loadAnd(() -> cache.evict("user")));
+        assertThat(stale).isNotNull();
+
+        cache.get("user", this::load);
+        cache.get("user", this::load);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void aLoadOverlappingAClearIsNotCached() {
+        cache.get("user", loadAnd(cache::clear));
+
+        cache.get("user", this::load);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictingAnotherUserKeepsTheLoad() {
+        cache.get("user", loadAnd(() -> cache.evict(otherSlot("user"))));
+
+        cache.get("user", this::load);
+        assertThat(loads).hasValue(1);
+    }
+
+    private UserFactory load(String username) {
+        loads.incrementAndGet();
+        return mock(UserFactory.class);
+    }
+
+    private Function<String, UserFactory> loadAnd(Runnable concurrentWrite) {
+        return username -> {
+            UserFactory snapshot = load(username);
+            concurrentWrite.run();
+            return snapshot;
+        };
+    }
+
+    private double gets(String result) {
+        return registry.get("auth.cache.gets").tag("result", result).functionCounter().count();
+    }
+
+    /**
+     * @return Un nombre de usuario cuya generación no comparte franja con la de
+     *         `username`.
+     */
+    private static String otherSlot(String username) {
+        for (int i = 0;; i++) {
+            String other = "other-" + i;
+            if (slot(other) != slot(username)) {
+                return other;
+            }
+        }
+    }
+
+    private static int slot(String username) {
+        int hash = username.hashCode();
+        return (hash ^ (hash >>> 16)) & 1023;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.pbac.web.security.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.core.userdetails.User;
+
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.ErrorResponses;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * El ciclo de vida de las claves se recorre con `rotate(now)`: con estos
+ * valores, una clave creada en `t` se reemplaza en `t + 100s`, su sucesora
+ * firma desde `t + 110s` y la clave reemplazada se retira en `t + 170s`.
+ */
+class JwtKeyRingTests {
+    private static final long ROTATION = 100_000;
+    private static final int MAX_AGE_SECONDS = 10;
+    private static final long EXPIRATION = 60_000;
+
+    private Config config;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config();
+        config.secret_key = "bb6a14ac2eba9b3e01f52ab78a81c08c57f6cbda0c38736c6bf683e33a399481";
+        config.jwt_algorithm = "ES256";
+        config.jwt_key_ring_rotation_millis = ROTATION;
+        config.jwks_max_age_seconds = MAX_AGE_SECONDS;
+        config.expiration_millis = EXPIRATION;
+    }
+
+    @Test
+    void aNewKeyIsPublishedBeforeItSignsAndRetiredAfterItsTokensExpire() {
+        JwtKeyRing ring = new JwtKeyRing(config);
+        JwtKeyRing.SigningKey first = ring.signingKey();
+        long start = first.createdAt();
+
+        ring.rotate(start + ROTATION);
+        assertThat(kids(ring)).hasSize(2).contains(first.kid());
+        String second = kids(ring).get(1);
+        assertThat(ring.signingKey().kid()).isEqualTo(first.kid());
+
+        ring.rotate(start + ROTATION + MAX_AGE_SECONDS * 1000L);
+        assertThat(ring.signingKey().kid()).isEqualTo(second);
+        assertThat(ring.verificationKey(first.kid())).isNotNull();
+
+        ring.rotate(start + ROTATION + MAX_AGE_SECONDS * 1000L + EXPIRATION);
+        assertThat(kids(ring)).containsExactly(second);
+        assertThat(ring.verificationKey(first.kid())).isNull();
+    }
+
+    @Test
+    void tokensVerifyWhileTheirKeyIsPublished() {
+        JwtKeyRing ring = new JwtKeyRing(config);
+        JwtService jwtService = new JwtService(config, ring);
+        String token = jwtService.generateAccessToken(User.withUsername("user").password("").build());
+        long start = ring.signingKey().createdAt();
+
+        ring.rotate(start + ROTATION);
+        ring.rotate(start + ROTATION + MAX_AGE_SECONDS * 1000L);
+        assertThat(jwtService.verify(token).isValid()).isTrue();
+
+        ring.rotate(start + ROTATION + MAX_AGE_SECONDS * 1000L + EXPIRATION);
+        assertThat(jwtService.verify(token).getErr()).isEqualTo(ErrorResponses.INVALID_TOKEN);
+    }
+
+    @Test
+    void jwksPublishesEachKeyAsAnEcJwk() {
+        JwtKeyRing ring = new JwtKeyRing(config);
+        ECPublicKey publicKey = (ECPublicKey) ring.signingKey().publicKey();
+
+        JsonArray keys = JsonParser.parseString(new String(ring.jwks(), StandardCharsets.UTF_8))
+                .getAsJsonObject().getAsJsonArray("keys");
+
+        assertThat(keys).hasSize(1);
+        JsonObject jwk = keys.get(0).getAsJsonObject();
+        assertThat(jwk.get("kty").getAsString()).isEqualTo("EC");
+        assertThat(jwk.get("crv").getAsString()).isEqualTo("P-256");
+        assertThat(jwk.get("alg").getAsString()).isEqualTo("ES256");
+        assertThat(jwk.get("use").getAsString()).isEqualTo("sig");
+        assertThat(jwk.get("kid").getAsString()).isEqualTo(ring.signingKey().kid());
+        assertThat(coordinate(jwk, "x")).isEqualTo(publicKey.getW().getAffineX());
+        assertThat(coordinate(jwk, "y")).isEqualTo(publicKey.getW().getAffineY());
+    }
+
+    @Test
+    void instancesSharingADirectorySeeTheSameKeys(@TempDir Path directory) throws Exception {
+        config.jwt_key_ring_path = directory.toString();
+        JwtKeyRing first = new JwtKeyRing(config);
+        long start = first.signingKey().createdAt();
+        first.rotate(start + ROTATION);
+
+        JwtKeyRing second = new JwtKeyRing(config);
+
+        assertThat(kids(second)).isEqualTo(kids(first));
+        assertThat(second.signingKey().kid()).isEqualTo(first.signingKey().kid());
+
+        first.rotate(start + ROTATION + MAX_AGE_SECONDS * 1000L + EXPIRATION);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    private static List<String> kids(JwtKeyRing ring) {
+        List<String> kids = new ArrayList<>();
+        JsonArray keys = JsonParser.parseString(new String(ring.jwks(), StandardCharsets.UTF_8))
+                .getAsJsonObject().getAsJsonArray("keys");
+        keys.forEach(key -> kids.add(key.getAsJsonObject().get("kid").getAsString()));
+        return kids;
+    }
+
+    private static BigInteger coordinate(JsonObject jwk, String name) {
+        byte[] bytes = Base64.getUrlDecoder().decode(jwk.get(name).getAsString());
+        assertThat(bytes).hasSize(32);
+        return new BigInteger(1, bytes);
+    }
+}
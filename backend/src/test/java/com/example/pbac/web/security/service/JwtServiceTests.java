@@ -0,0 +1,152 @@
+package com.example.pbac.web.security.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.example.pbac.persistence.model.security.Permission;
+import com.example.pbac.persistence.model.security.Role;
+import com.example.pbac.persistence.repository.security.PermissionRepository;
+import com.example.pbac.persistence.repository.security.RoleRepository;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.web.security.ErrorResponses;
+import com.example.pbac.web.security.model.UserFactory;
+
+class JwtServiceTests {
+
+    private Config config;
+    private JwtService jwtService;
+    private UserDetails user;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config();
+        config.secret_key = "bb6a14ac2eba9b3e01f52ab78a81c08c57f6cbda0c38736c6bf683e33a399481";
+        config.jwt_algorithm = "HS256";
+        config.expiration_millis = 60_000;
+        jwtService = new JwtService(config, new JwtKeyRing(config));
+        user = User.withUsername("user").password("").build();
+    }
+
+    @Test
+    void anExpiredTokenKeepsItsSubjectButIsNeverValid() {
+        config.expiration_millis = -1_000;
+        JwtService.VerifiedToken token = jwtService.verify(jwtService.generateAccessToken(user));
+
+        assertThat(token.getSubject()).isEqualTo("user");
+        assertThat(token.isExpired()).isTrue();
+        assertThat(jwtService.validate(token, user)).isEqualTo(ErrorResponses.EXPIRED_TOKEN);
+        assertThat(jwtService.isTokenValid(token, user).isValid()).isFalse();
+    }
+
+    @Test
+    void aCurrentTokenIsValidForItsOwnUserOnly() {
+        JwtService.VerifiedToken token = jwtService.verify(jwtService.generateAccessToken(user));
+
+        assertThat(jwtService.validate(token, user)).isNull();
+        assertThat(jwtService.validate(token, User.withUsername("other").password("").build()))
+                .isEqualTo(ErrorResponses.INVALID_TOKEN);
+    }
+
+    @Test
+    void aRefreshTokenCarriesItsUserUnderAnHmac() {
+        String token = jwtService.generateRefreshToken("user");
+
+        assertThat(jwtService.hasRefreshTokenSubject(token)).isTrue();
+        assertThat(jwtService.refreshTokenSubject(token)).contains("user");
+    }
+
+    @Test
+    void aRefreshTokenWithoutAValidHmacHasNoUser() {
+        String token = jwtService.generateRefreshToken("user");
+        String[] parts = token.split("\\.");
+        String admin = Base64.getUrlEncoder().withoutPadding().encodeToString("admin".getBytes(StandardCharsets.UTF_8));
+
+        // Otro usuario con el HMAC original, el formato sin HMAC y un token de acceso
+        assertThat(jwtService.refreshTokenSubject(parts[0] + "." + admin + "." + parts[2])).isEmpty();
+        assertThat(jwtService.refreshTokenSubject(parts[0] + "." + parts[1])).isEmpty();
+        assertThat(jwtService.refreshTokenSubject(parts[0] + "." + parts[1] + ".AAAA")).isEmpty();
+        assertThat(jwtService.refreshTokenSubject(jwtService.generateAccessToken(user))).isEmpty();
+    }
+
+    @Test
+    void aRefreshTokenSignedWithAnotherKeyHasNoUser() {
+        Config other = new Config();
+        other.secret_key = "0f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0";
+        other.jwt_algorithm = "HS256";
+        JwtService otherService = new JwtService(other, new JwtKeyRing(other));
+
+        assertThat(jwtService.refreshTokenSubject(otherService.generateRefreshToken("user"))).isEmpty();
+    }
+
+    @Test
+    void aSelfContainedTokenCarriesTheCompiledAuthorities() {
+        config.self_contained = true;
+        PermissionCatalog catalog = catalog();
+        UserFactory admin = new UserFactory(admin(), catalog.current());
+
+        JwtService.VerifiedToken token = jwtService.verify(jwtService.generateAccessToken(admin));
+
+        assertThat(token.isSelfContained()).isTrue();
+        assertThat(token.getCatalogVersion()).isEqualTo(catalog.current().getVersion());
+        assertThat(token.getRoleIds()).containsExactly(2);
+        UserFactory decoded = new UserFactory(token.getSubject(), token.getRoleIds(), token.getPermissions(),
+                catalog.current());
+        assertThat(decoded.getAuthorityNames()).isEqualTo(admin.getAuthorityNames())
+                .containsExactly("ROLE_ADMIN", "user_delete", "user_findAll");
+    }
+
+    @Test
+    void onlyCompiledUsersGetSelfContainedTokens() {
+        config.self_contained = true;
+
+        assertThat(jwtService.verify(jwtService.generateAccessToken(user)).isSelfContained()).isFalse();
+    }
+
+    /**
+     * @return Un catálogo con tres permisos y el rol `ADMIN`, que tiene dos de
+     *         ellos.
+     */
+    private static PermissionCatalog catalog() {
+        PermissionRepository permissionRepository = mock(PermissionRepository.class);
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(permissionRepository.findAll()).thenReturn(List.of(permission(1, "user_findAll"),
+                permission(2, "user_create"), permission(3, "user_delete")));
+        when(roleRepository.findAll()).thenReturn(List.of(admin().getRoles().iterator().next()));
+        when(roleRepository.findGrants()).thenReturn(List.of("ROLE_ADMIN:user_findAll", "ROLE_ADMIN:user_delete"));
+        PermissionCatalog catalog = new PermissionCatalog(permissionRepository, roleRepository,
+                mock(ApplicationContext.class));
+        catalog.refresh();
+        return catalog;
+    }
+
+    private static com.example.pbac.persistence.model.security.User admin() {
+        Role role = new Role();
+        role.setId(2);
+        role.setName("ADMIN");
+        role.setPermissions(Set.of(permission(1, "user_findAll"), permission(3, "user_delete")));
+        com.example.pbac.persistence.model.security.User user = new com.example.pbac.persistence.model.security.User();
+        user.setUsername("admin");
+        user.setActive(true);
+        user.setRoles(Set.of(role));
+        return user;
+    }
+
+    private static Permission permission(int id, String name) {
+        Permission permission = new Permission();
+        permission.setId(id);
+        permission.setName(name);
+        return permission;
+    }
+}
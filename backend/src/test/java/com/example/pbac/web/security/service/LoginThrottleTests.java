@@ -0,0 +1,129 @@
+package com.example.pbac.web.security.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.pbac.util.config.Config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * El tiempo se pasa explícitamente a `tryAcquire(username, address, now)`. Con
+ * estos valores la cubeta de un usuario guarda 2 tokens y recupera uno por
+ * segundo.
+ */
+class LoginThrottleTests {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String ADDRESS = "10.0.0.1";
+
+    private Config config;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config();
+        config.login_throttle_enabled = true;
+        config.login_throttle_ip_capacity = 100;
+        config.login_throttle_ip_refill_per_minute = 100;
+        config.login_throttle_username_capacity = 2;
+        config.login_throttle_username_refill_per_minute = 60;
+        config.login_throttle_stripes = 2;
+        config.login_throttle_max_entries = 1000;
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void anEmptyBucketRefillsOverTime() {
+        LoginThrottle throttle = new LoginThrottle(config, registry);
+
+        assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isZero();
+        assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isZero();
+        assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isEqualTo(1);
+        assertThat(throttle.tryAcquire("user", ADDRESS, SECOND / 2)).isEqualTo(1);
+
+        assertThat(throttle.tryAcquire("user", ADDRESS, SECOND)).isZero();
+        assertThat(throttle.tryAcquire("other", ADDRESS, SECOND)).isZero();
+        assertThat(throttled("username")).isEqualTo(2);
+    }
+
+    @Test
+    void aRejectedUsernameDoesNotConsumeTheAddress() {
+        config.login_throttle_ip_capacity = 3;
+        config.login_throttle_ip_refill_per_minute = 1;
+        LoginThrottle throttle = new LoginThrottle(config, registry);
+        throttle.tryAcquire("user", ADDRESS, 0);
+        throttle.tryAcquire("user", ADDRESS, 0);
+
+        assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isPositive();
+
+        assertThat(throttle.tryAcquire("other", ADDRESS, 0)).isZero();
+        assertThat(throttle.tryAcquire("other", ADDRESS, 0)).isEqualTo(60);
+        assertThat(throttled("ip")).isEqualTo(1);
+    }
+
+    @Test
+    void aSuccessfulLoginRefundsTheUsernameToken() {
+        LoginThrottle throttle = new LoginThrottle(config, registry);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isZero();
+            throttle.loginSucceeded("user", 0);
+        }
+        throttle.tryAcquire("user", ADDRESS, 0);
+        throttle.tryAcquire("user", ADDRESS, 0);
+        assertThat(throttle.tryAcquire("user", ADDRESS, 0)).isPositive();
+    }
+
+    @Test
+    void aFullStripeNeverEvictsADrainedBucket() {
+        config.login_throttle_max_entries = 2;
+        LoginThrottle throttle = new LoginThrottle(config, registry);
+        String[] usernames = sameStripe(2);
+        throttle.tryAcquire(usernames[0], ADDRESS, 0);
+        throttle.tryAcquire(usernames[0], ADDRESS, 0);
+
+        // Con la franja llena, la clave nueva espera a que la cubeta se recargue
+        assertThat(throttle.tryAcquire(usernames[1], ADDRESS, 0)).isEqualTo(2);
+        assertThat(throttle.tryAcquire(usernames[0], ADDRESS, 0)).isPositive();
+
+        assertThat(throttle.tryAcquire(usernames[1], ADDRESS, 2 * SECOND)).isZero();
+        assertThat(throttle.tryAcquire(usernames[0], ADDRESS, 2 * SECOND)).isPositive();
+    }
+
+    @Test
+    void idleEvictionRemovesOnlyRefilledBuckets() {
+        LoginThrottle throttle = new LoginThrottle(config, registry);
+        long now = System.nanoTime();
+        throttle.tryAcquire("user", ADDRESS, now);
+        throttle.loginSucceeded("user", now);
+
+        throttle.evictIdle();
+
+        // Solo queda la cubeta de la IP, que no se recargó por completo
+        assertThat(registry.get("auth.login.throttle.buckets").gauge().value()).isEqualTo(1);
+    }
+
+    private double throttled(String key) {
+        return registry.get("auth.login.throttled").tag("key", key).counter().count();
+    }
+
+    /**
+     * @return Nombres de usuario que caen en la misma franja (hay dos franjas).
+     */
+    private static String[] sameStripe(int count) {
+        String[] usernames = new String[count];
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            String username = "user-" + i;
+            int hash = username.hashCode();
+            if (((hash ^ (hash >>> 16)) & 1) == 0) {
+                usernames[found++] = username;
+            }
+        }
+        return usernames;
+    }
+}
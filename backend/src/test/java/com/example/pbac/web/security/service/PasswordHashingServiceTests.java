@@ -0,0 +1,125 @@
+package com.example.pbac.web.security.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.example.pbac.persistence.service.security.AuthService;
+import com.example.pbac.persistence.service.security.SessionService;
+import com.example.pbac.persistence.service.security.TokenRevocationService;
+import com.example.pbac.persistence.service.security.UserService;
+import com.example.pbac.util.config.Config;
+import com.example.pbac.util.metrics.AuthMetrics;
+import com.example.pbac.web.controller.AuthController;
+import com.example.pbac.web.security.Error;
+import com.example.pbac.web.security.ErrorKind;
+import com.example.pbac.web.security.Result;
+import com.example.pbac.web.security.model.JwtAuthResponse;
+import com.example.pbac.web.security.model.LoginRequest;
+import com.example.pbac.web.security.provider.PasswordEncoderProvider;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * El codificador simulado bloquea hasta `release`, así el único hilo del grupo
+ * queda ocupado y la cola (de una tarea) se llena de forma determinista.
+ */
+class PasswordHashingServiceTests {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry registry;
+    private Config config;
+    private PasswordHashingService service;
+
+    @BeforeEach
+    void setUp() {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.matches(any(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        PasswordEncoderProvider provider = mock(PasswordEncoderProvider.class);
+        when(provider.passwordEncoder()).thenReturn(encoder);
+
+        config = new Config();
+        config.password_hashing_threads = 1;
+        config.password_hashing_queue_capacity = 1;
+        config.password_hashing_retry_after_seconds = 7;
+        registry = new SimpleMeterRegistry();
+        service = new PasswordHashingService(provider, config, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void aFullQueueRejectsImmediately() throws Exception {
+        CompletableFuture<Boolean> running = saturate();
+
+        assertThat(service.isSaturated()).isTrue();
+        assertThatThrownBy(() -> service.matches("password", "hash")).isInstanceOf(RejectedExecutionException.class);
+        assertThat(registry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("password.hashing.queue").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void loginAnswers503WithRetryAfterBeforeTouchingTheDatabase() throws Exception {
+        saturate();
+        UserService userService = mock(UserService.class);
+        AuthService authService = new AuthService(config, userService, mock(SessionService.class),
+                mock(JwtService.class), service, mock(PermissionCatalog.class), new AuthMetrics(registry),
+                mock(TokenRevocationService.class));
+        AuthController controller = new AuthController(authService, config, mock(LoginThrottle.class));
+        LoginRequest request = new LoginRequest();
+        request.setUsername("user");
+        request.setPassword("password");
+
+        ResponseEntity<Result<JwtAuthResponse, Error>> response = controller.login(request,
+                new MockHttpServletRequest());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+        assertThat(response.getBody().getErr().getErrorKind()).isEqualTo(ErrorKind.ServiceUnavailableError);
+        verifyNoInteractions(userService);
+    }
+
+    /**
+     * Ocupa el hilo del grupo y deja una tarea en cola.
+     *
+     * @return La tarea en ejecución.
+     */
+    private CompletableFuture<Boolean> saturate() throws InterruptedException {
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> service.matches("a", "hash"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture.supplyAsync(() -> service.matches("b", "hash"));
+        while (!service.isSaturated()) {
+            Thread.onSpinWait();
+        }
+        return running;
+    }
+}